@@ -26,6 +26,7 @@ import rearth.oracle.util.TitleLookup;
 
 import java.util.*;
 import java.util.function.BiPredicate;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public final class OracleClient {
@@ -62,6 +63,7 @@ public final class OracleClient {
                 
                 if (Screen.hasControlDown()) {
                     Oracle.LOGGER.info("Opening Oracle Search...");
+                    prewarmSearch();
                     client.setScreen(new SearchScreen(client.currentScreen));
                     return;
                 }
@@ -72,6 +74,7 @@ public final class OracleClient {
             
             if (ORACLE_SEARCH.wasPressed()) {
                 Oracle.LOGGER.info("Opening Oracle Search...");
+                prewarmSearch();
                 client.setScreen(new SearchScreen(client.currentScreen));
             }
         });
@@ -79,7 +82,11 @@ public final class OracleClient {
         ReloadListenerRegistry.register(ResourceType.CLIENT_RESOURCES, (SynchronousResourceReloader) manager -> {
             Oracle.LOGGER.info("Indexing Oracle Wiki Resources...");
             findAllResourceEntries(manager);
-            getOrCreateSearch();    // start search to begin indexing in advance
+            if (searchInstance == null) {
+                getOrCreateSearch();    // start search to begin indexing in advance
+            } else {
+                searchInstance.reload();    // only re-embeds pages that were added or changed
+            }
         });
         
         ClientTickEvent.CLIENT_POST.register(client -> {
@@ -191,17 +198,35 @@ public final class OracleClient {
     public static SemanticSearch getOrCreateSearch() {
         
         if (searchInstance == null) {
-            BiPredicate<String, String> filter = (modId, path) -> {
+            Function<String, BiPredicate<String, String>> filters = locale -> (modId, path) -> {
               DocsFormat format = getWikiFormat(modId);
-              return !format.isTranslatedPath(path);
+              if (locale.equals(SemanticSearch.BASE_LOCALE)) return !format.isTranslatedPath(path);
+              return path.contains(format.getTranslatedDir(locale) + "/");
             };
 
-            searchInstance = new SemanticSearch(filter);
+            searchInstance = new SemanticSearch(filters);
         }
         
         return searchInstance;
     }
     
+    /**
+     * Reports every rendered frame to the search indexer, which paces itself by the frame time while the game is played.
+     * Without a world, with a screen open or while paused, indexing may run at full speed.
+     */
+    public static void onFrameRendered(MinecraftClient client) {
+        if (searchInstance == null) return;
+        var relaxed = client.world == null || client.isPaused() || client.currentScreen != null;
+        searchInstance.frameRendered(System.nanoTime(), relaxed);
+    }
+    
+    /**
+     * Starts loading the embedding model if it was unloaded while idle, so it is ready by the time the first query is typed.
+     */
+    private static void prewarmSearch() {
+        if (searchInstance != null) searchInstance.prewarm();
+    }
+    
     public static String getActiveLangCode() {
         return MinecraftClient.getInstance().getLanguageManager().getLanguage();
     }
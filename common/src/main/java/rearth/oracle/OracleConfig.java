@@ -0,0 +1,80 @@
+package rearth.oracle;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import dev.architectury.platform.Platform;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Client settings, stored as {@code config/oracle_index.json}. Missing keys are filled with
+ * their defaults and written back, so the file always lists every available option.
+ */
+public final class OracleConfig {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static OracleConfig instance;
+
+    // semantic search: approximate nearest neighbour index
+    public int hnswM = 16;                  // graph links per node, higher = better recall, more memory
+    public int hnswEfConstruction = 100;    // candidate list size while building the graph
+    public int hnswEfSearch = 64;           // candidate list size while searching
+    public int exactSearchThreshold = 2000; // below this many chunks, a full scan is used instead of the graph
+    public boolean quantizeVectors = false; // keep the vectors as int8 in memory (4x smaller), full vectors only stay on disk for re-ranking
+    public int quantizedRerankFactor = 4;   // re-rank this many times the requested results with full floats, 0 = off
+    
+    // semantic search: embedding model
+    public String embeddingModel = "all-minilm-l6-v2-q"; // embedding backend, the bundled model or a folder in config/oracle_index/models
+    public int modelIdleMinutes = 10;       // unload the model after this long without searches, 0 = keep it loaded
+    public int queryIntraOpThreads = 2;     // threads used to embed one search query, 0 = ONNX default (one per core)
+    public int ingestIntraOpThreads = 1;    // threads per chunk while indexing, chunks already run in parallel on the workers
+    
+    // semantic search: ranking
+    public int candidateChunks = 100;           // chunks fetched per query, before they are grouped into pages
+    public double pageScoreTemperature = 0.05;  // pools the chunk scores of a page (soft maximum), 0 = best chunk only
+    
+    // semantic search: two-stage retrieval
+    public int lexicalCandidates = 400;     // chunks the keyword index picks for vector scoring, 0 = always score every chunk
+    public int minLexicalCandidates = 40;   // fewer keyword matches than this fall back to scoring every chunk
+    public int twoStageMinChunks = 20000;   // only indexes with at least this many chunks use the keyword stage
+    
+    // semantic search: background indexing
+    public boolean throttleIndexing = true;         // pace indexing by the frame time while playing, false = always full speed
+    public double minIndexingDutyCycle = 0.1;       // lowest share of time spent indexing while playing
+    public double indexingFrameTolerance = 0.2;     // accepted frame time increase over the frames without indexing
+
+    public static synchronized OracleConfig get() {
+        if (instance == null) instance = load();
+        return instance;
+    }
+
+    private static OracleConfig load() {
+        var file = getConfigFile();
+        var config = new OracleConfig();
+
+        if (Files.isRegularFile(file)) {
+            try {
+                var parsed = GSON.fromJson(Files.readString(file), OracleConfig.class);
+                if (parsed != null) config = parsed;
+            } catch (IOException | RuntimeException e) {
+                Oracle.LOGGER.warn("Unable to read config {}, using defaults: {}", file, e.getMessage());
+                return config;
+            }
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, GSON.toJson(config));
+        } catch (IOException e) {
+            Oracle.LOGGER.warn("Unable to write config {}: {}", file, e.getMessage());
+        }
+
+        return config;
+    }
+
+    private static Path getConfigFile() {
+        return Platform.getConfigFolder().resolve(Oracle.MOD_ID + ".json");
+    }
+}
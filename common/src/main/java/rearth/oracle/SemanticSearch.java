@@ -1,172 +1,979 @@
 package rearth.oracle;
 
-import ai.djl.engine.Engine;
-import dev.langchain4j.data.document.Document;
+import dev.architectury.platform.Platform;
 import dev.langchain4j.data.document.Metadata;
-import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
-import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.resource.language.I18n;
+import net.minecraft.registry.Registries;
 import net.minecraft.util.Identifier;
-import rearth.oracle.util.MarkdownParser;
+import org.jetbrains.annotations.Nullable;
+import rearth.oracle.progress.OracleProgressAPI;
+import rearth.oracle.search.EmbeddingCache;
+import rearth.oracle.search.EmbeddingModelManager;
+import rearth.oracle.search.EmbeddingProvider;
+import rearth.oracle.search.EmbeddingProviders;
+import rearth.oracle.search.FacetFilter;
+import rearth.oracle.search.HnswIndex;
+import rearth.oracle.search.IndexingJob;
+import rearth.oracle.search.IndexingPipeline;
+import rearth.oracle.search.IndexingScheduler;
+import rearth.oracle.search.LexicalIndex;
+import rearth.oracle.search.LruCache;
+import rearth.oracle.search.OffHeapEmbeddingStore;
+import rearth.oracle.search.PageAggregator;
+import rearth.oracle.search.SearchPreview;
+import rearth.oracle.search.SearchReadiness;
+import rearth.oracle.search.TitleTypeahead;
+import rearth.oracle.search.TwoStageRetrieval;
+import rearth.oracle.ui.OracleScreen;
 import rearth.oracle.util.TitleLookup;
 
 import java.io.IOException;
 import java.io.InvalidObjectException;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Objects;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static rearth.oracle.OracleClient.ROOT_DIR;
 
 public class SemanticSearch {
     
-    private InMemoryEmbeddingStore<TextSegment> embeddingStore;
-    private AllMiniLmL6V2QuantizedEmbeddingModel embeddingModel;
-    private EmbeddingStoreIngestor ingestor;
+    // single coordinator, so a reload queues behind a running indexing job instead of racing it
+    private static final ExecutorService COORDINATOR = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "Oracle Search Indexer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
     
-    public static AtomicBoolean EMBEDDING_ERRORED = new AtomicBoolean(false);
-    public static AtomicBoolean FINISHED = new AtomicBoolean(false);
+    // untranslated pages are always indexed, translations only for the active language
+    public static final String BASE_LOCALE = "en_us";
     
-    public SemanticSearch(BiPredicate<String, String> filter) {
+    // folder next to the pages that holds prebuilt indexes, one per embedding model
+    private static final String PREBUILT_INDEX_DIR = "/.search/";
+    private static final int MAX_RESULTS = 15;
+    // metadata keys the stores keep row bitmaps for, so filters on them are applied inside the scan
+    private static final Set<String> FACET_KEYS = Set.of("wiki", "mode", "page");
+    // restricts a query, e.g. "wiki:oritech mode:content reactor"
+    private static final Pattern FILTER_PREFIX = Pattern.compile("(?<!\\S)(wiki|mode):(\\S+)");
+    // chunks per step of a progressive build, doubling up to the maximum
+    private static final int FIRST_WAVE_SIZE = 16;
+    private static final int MAX_WAVE_SIZE = 1024;
+    
+    private final Function<String, BiPredicate<String, String>> filters;
+    private final OffHeapEmbeddingStore.Settings storeSettings;
+    private final int candidateChunks;
+    private final double pageScoreTemperature;
+    private final TwoStageRetrieval twoStageRetrieval;
+    // guards the shard stores while a reload swaps segments or shards, so searches never see a half-applied update
+    private final ReadWriteLock storeLock = new ReentrantReadWriteLock();
+    private final IndexShard baseShard;
+    // translated pages of the active language, if there are any. Replaced when the language changes
+    private volatile IndexShard localeShard;
+    // names of all pages, written by the coordinator. The typeahead itself is built lazily on the client thread,
+    // since item names can only be translated once the language is loaded
+    private volatile List<TitleSource> titleSources = List.of();
+    private List<TitleSource> typeaheadSources;
+    private TitleTypeahead<Suggestion> typeahead;
+    // result ids of pages the player hasn't unlocked, refreshed on the client thread since validators read game state
+    private volatile Set<String> lockedPages = Set.of();
+    private int lockedPagesVersion = -1;
+    // selected by the first indexing job, probing the ONNX runtime loads its natives
+    private volatile EmbeddingProvider embeddingProvider;
+    // no model can run on this system, e.g. no ONNX natives and no static model installed
+    private volatile boolean modelMissing = false;
+    private final EmbeddingModelManager embeddingModel;
+    // paces indexing by the frame time, fed by the render thread
+    private final IndexingScheduler indexingScheduler;
+    // repeated queries (typing, backspacing, retyping) skip the model and the store
+    private final LruCache<String, Embedding> queryEmbeddings = new LruCache<>(256);
+    private final LruCache<String, List<SearchResult>> queryResults = new LruCache<>(64);
+    private volatile int resultsProgressVersion = -1;
+    
+    private final AtomicLong generations = new AtomicLong();
+    // latest requested job, a newer reload cancels it
+    private volatile IndexingJob currentJob;
+    // generation of the job that produced the current index, 0 until the first job finished
+    private volatile long indexGeneration = 0;
+    private volatile boolean embeddingFailed = false;
+    // a new shard is being built and already answers queries with the chunks embedded so far
+    private volatile boolean partialIndex = false;
+    // stays ready across reloads, a failure only until the next job starts
+    private final SearchReadiness readiness = new SearchReadiness();
+    
+    /**
+     * @param filters page filter per language code, receiving the wiki id and the page path. The {@link #BASE_LOCALE}
+     *                filter selects the untranslated pages, every other one the translations into that language.
+     */
+    public SemanticSearch(Function<String, BiPredicate<String, String>> filters) {
+        this.filters = filters;
+        
+        var config = OracleConfig.get();
+        var graphParameters = new HnswIndex.Parameters(config.hnswM, config.hnswEfConstruction, config.hnswEfSearch);
+        this.storeSettings = new OffHeapEmbeddingStore.Settings(graphParameters, config.exactSearchThreshold, config.quantizeVectors, config.quantizedRerankFactor);
+        this.candidateChunks = Math.max(MAX_RESULTS, config.candidateChunks);
+        this.pageScoreTemperature = config.pageScoreTemperature;
+        this.twoStageRetrieval = new TwoStageRetrieval(config.lexicalCandidates, config.minLexicalCandidates, config.twoStageMinChunks);
+        this.baseShard = new IndexShard(BASE_LOCALE);
+        this.indexingScheduler = new IndexingScheduler(config.throttleIndexing, config.minIndexingDutyCycle, config.indexingFrameTolerance);
+        // queries are a single chunk, embedded right on the calling thread
+        this.embeddingModel = new EmbeddingModelManager(lane -> lane == EmbeddingModelManager.Lane.QUERY
+                                                                  ? embeddingProvider.create(Runnable::run, config.queryIntraOpThreads)
+                                                                  : embeddingProvider.create(IndexingPipeline.getWorkers(), config.ingestIntraOpThreads),
+          IndexingPipeline.getWorkerCount(), config.modelIdleMinutes * 60_000L, indexingScheduler);
+        
+        reload();
+    }
+    
+    /**
+     * Brings the index up to date with the currently loaded resources. Pages are compared by resource id
+     * and content hash; only added, changed or removed pages touch the store, and the whole change is applied
+     * in one step, so searches keep working on the previous state until the update is ready.
+     *
+     * <p>Translated pages of the active language are indexed into a separate shard, which is dropped again when the
+     * language changes. Both shards share the embedding cache, so text that was left untranslated is only embedded once.</p>
+     *
+     * <p>Every reload starts a new {@link IndexingJob} and cancels the previous one, if it is still queued or running.</p>
+     *
+     * @return completes once this reload is applied
+     */
+    public CompletableFuture<IndexingJob> reload() {
+        
+        var job = new IndexingJob(generations.incrementAndGet());
+        var previousJob = currentJob;
+        if (previousJob != null) previousJob.cancel();
+        currentJob = job;
+        
+        var activeWiki = OracleScreen.activeWiki;
+        var activeLocale = OracleClient.getActiveLangCode();
+        var locale = activeLocale.startsWith("en_") ? BASE_LOCALE : activeLocale;
+        var resourceManager = MinecraftClient.getInstance().getResourceManager();
+        var resources = resourceManager.findResources(ROOT_DIR, path -> path.getPath().endsWith(".mdx"));
+        var contentIds = Map.copyOf(OracleClient.CONTENT_ID_MAP);
+        // the model isn't known yet, the job picks the prebuilt indexes that match it
+        var prebuiltIndexes = resourceManager.findResources(ROOT_DIR, path -> path.getPath().contains(PREBUILT_INDEX_DIR) && path.getPath().endsWith(".bin"));
         
         // do this in background to avoid freezing main
-        new Thread(() -> {
+        COORDINATOR.execute(() -> {
+            
+            if (job.isCancelled()) {
+                job.markCancelled();
+                return;
+            }
             
+            EmbeddingCache embeddingCache = null;
             try {
                 
-                Oracle.LOGGER.info("Starting search indexing in background thread");
+                Oracle.LOGGER.info("Starting search indexing in background thread (generation {})", job.generation());
+                job.setState(IndexingJob.State.READING);
+                readiness.jobStarted();
                 var startedAt = System.nanoTime();
+                indexingScheduler.resetStats();
+                var workers = IndexingPipeline.getWorkers();
                 
-                embeddingStore = new InMemoryEmbeddingStore<>();
+                var provider = selectEmbeddingProvider();
+                var prebuiltIndexFile = prebuiltIndexFile(provider.id());
                 
-                // workaround for weird neoforge different class loading issues?
-                var original = Thread.currentThread().getContextClassLoader();
-                try {
-                    // Inject the class loader that actually has the DJL engine resources
-                    Thread.currentThread().setContextClassLoader(Engine.class.getClassLoader());
-                    embeddingModel = new AllMiniLmL6V2QuantizedEmbeddingModel();
-                } finally {
-                    // Restore the original loader to avoid side‑effects
-                    Thread.currentThread().setContextClassLoader(original);
-                }
+                // the cache is only held on the heap while a job runs, the live vectors are in the off-heap store
+                embeddingCache = EmbeddingCache.load(getCacheFile(), provider.id());
+                var cache = embeddingCache;
+                prebuiltIndexes.forEach((id, resource) -> {
+                    if (!id.getPath().endsWith(prebuiltIndexFile)) return;
+                    try (var stream = resource.getInputStream()) {
+                        cache.addBundled(stream, id.toString());
+                    } catch (IOException e) {
+                        Oracle.LOGGER.warn("Unable to open prebuilt embeddings {}: {}", id, e.getMessage());
+                    }
+                });
+                var pipeline = new IndexingPipeline(workers, embeddingCache, job);
                 
-                ingestor = EmbeddingStoreIngestor.builder()
-                             .embeddingStore(embeddingStore)
-                             .embeddingModel(embeddingModel)
-                             .documentSplitter(DocumentSplitters.recursive(500, 50))
-                             .build();
-                // generate embeddings for all found entries
-                var resourceManager = MinecraftClient.getInstance().getResourceManager();
-                var resources = resourceManager.findResources(ROOT_DIR, path -> path.getPath().endsWith(".mdx"));
+                var changed = baseShard.update(job, pipeline, pipeline.readPages(resources, filters.apply(BASE_LOCALE)), contentIds, activeWiki);
                 
-                for (var resourceId : resources.keySet()) {
-                    var purePath = resourceId.getPath().replaceFirst(ROOT_DIR + "/", "");
-                    var segments = purePath.split("/");
-                    var modId = segments[0];        // e.g. "oritech"
-                    var entryPath = purePath.replaceFirst(modId + "/", ""); // e.g. "tools/wrench.mdx"
-                    var entryFileName = segments[segments.length - 1]; // e.g. "wrench.mdx"
-                    var entryDirectory = entryPath.replace(entryFileName, ""); // e.g. "tools" or "processing/reactor" or ".translated/ja_jp/tools"
-                    
-                    if (!filter.test(modId, purePath)) continue; // skip / don't support translations for now
-                    
+                var currentLocaleShard = localeShard;
+                var translatedPages = locale.equals(BASE_LOCALE) ? List.<IndexingPipeline.PageSource>of() : pipeline.readPages(resources, filters.apply(locale));
+                if (currentLocaleShard != null && (translatedPages.isEmpty() || !currentLocaleShard.locale.equals(locale))) {
+                    // only the active language stays resident
+                    dropLocaleShard();
+                    currentLocaleShard = null;
+                    changed = true;
+                }
+                if (!translatedPages.isEmpty()) {
+                    var shard = currentLocaleShard != null ? currentLocaleShard : new IndexShard(locale);
                     try {
-                        var fileContent = new String(resources.get(resourceId).getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-                        var frontmatter = MarkdownParser.parseFrontmatter(fileContent);
-                        var title = MarkdownParser.parseHeadingTitle(fileContent);
-
-                        // generate embeddings
-                        var fileComponents = new HashMap<String, String>();
-                        frontmatter.map().forEach((k, v) -> {
-                            if (v.size() == 1) fileComponents.put(k, v.getFirst());
-                        });
-                        this.queueEmbeddingsJob(modId, entryDirectory, entryFileName, fileComponents, fileContent, title);
-                        
-                        
-                    } catch (IOException e) {
-                        Oracle.LOGGER.error("Unable to load book with id: {}", resourceId);
-                        throw new RuntimeException(e);
+                        changed |= shard.update(job, pipeline, translatedPages, contentIds, activeWiki);
+                    } catch (RuntimeException e) {
+                        if (shard != currentLocaleShard) shard.close();
+                        throw e;
                     }
+                    localeShard = shard;
                 }
                 
-                var time = System.nanoTime() - startedAt;
-                Oracle.LOGGER.info("Embeddings done in " + (time / 1_000_000) + " ms");
-                FINISHED.set(true);
+                titleSources = collectTitleSources();
+                indexGeneration = job.generation();
+                partialIndex = false;
+                embeddingFailed = false;
+                readiness.markReady();
+                
+                if (changed) {
+                    var time = System.nanoTime() - startedAt;
+                    Oracle.LOGGER.info("Embeddings done in " + (time / 1_000_000) + " ms");
+                    logIndexingStats(job);
+                    // only the changed pages were looked up, the unchanged ones still need their cached vectors
+                    baseShard.markCached(embeddingCache);
+                    if (localeShard != null) localeShard.markCached(embeddingCache);
+                    embeddingCache.saveAndPrune();
+                } else {
+                    Oracle.LOGGER.info("Search index is up to date");
+                }
+                job.finish();
                 
             } catch (Throwable e) {
+                
+                if (job.isCancelled()) {
+                    // keep what was embedded so far, the next job continues from there
+                    Oracle.LOGGER.info("Search indexing generation {} cancelled", job.generation());
+                    if (embeddingCache != null) embeddingCache.save();
+                    partialIndex = false;
+                    job.markCancelled();
+                    return;
+                }
+                
                 Oracle.LOGGER.error("Unable to generate embeddings: " + e.getMessage());
-                EMBEDDING_ERRORED.set(true);
+                embeddingFailed = true;
+                partialIndex = false;
+                if (baseShard.lexicalIndex != null) {
+                    Oracle.LOGGER.info("Falling back to keyword search");
+                    readiness.markReady();
+                } else {
+                    readiness.markFailed("Embeddings failed to load");
+                }
+                job.fail(e);
             }
-        }).start();
+        });
+        
+        return job.completion();
     }
     
+    /**
+     * @return whether queries can be answered, either by the full semantic index or by the keyword index
+     * @throws InvalidObjectException if the embeddings failed and there is no keyword index to fall back to
+     */
     public boolean isReady() throws InvalidObjectException {
-        
-        //noinspection PointlessBooleanExpression
-        if (EMBEDDING_ERRORED.get() == true) {
-            throw new InvalidObjectException("Embeddings failed to load");
+        return readiness.isReady();
+    }
+    
+    /**
+     * Completes once queries can be answered, see {@link #isReady()}. Completes exceptionally if indexing failed
+     * without a keyword index to fall back to. A later reload can still make the search ready.
+     */
+    public CompletableFuture<Void> whenReady() {
+        return readiness.whenReady();
+    }
+    
+    /**
+     * @return progress of the latest indexing job
+     */
+    public IndexingJob.Progress getProgress() {
+        return currentJob.progress();
+    }
+    
+    /**
+     * Completes when the latest indexing job ends, see {@link IndexingJob#completion()}.
+     */
+    public CompletableFuture<IndexingJob> whenIndexed() {
+        return currentJob.completion();
+    }
+    
+    /**
+     * @return generation of the indexing job the current index state comes from, 0 if no job finished yet
+     */
+    public long getIndexGeneration() {
+        return indexGeneration;
+    }
+    
+    /**
+     * @return whether an indexing job is still running, so results may still improve. Once a job failed to embed,
+     * this is false until the next reload, and the keyword fallback results are final.
+     */
+    public boolean isIndexing() {
+        var job = currentJob;
+        return job != null && !job.state().isDone();
+    }
+    
+    /**
+     * @return whether no embedding model can run on this system, so the search stays keyword only until a model
+     * is installed. False until the first indexing job selected the model.
+     */
+    public boolean isModelMissing() {
+        return modelMissing;
+    }
+    
+    private boolean isSemanticReady() {
+        return (indexGeneration > 0 || partialIndex) && !embeddingFailed;
+    }
+    
+    /**
+     * Called by the render thread after every frame, so background indexing can back off while the game is played.
+     *
+     * @param relaxed whether frame time doesn't matter right now, e.g. in menus or while the game is paused
+     */
+    public void frameRendered(long now, boolean relaxed) {
+        indexingScheduler.frameRendered(now, relaxed);
+    }
+    
+    /**
+     * @return how the latest indexing job was paced, and how the frame time looked meanwhile
+     */
+    public IndexingScheduler.Stats getIndexingStats() {
+        return indexingScheduler.stats();
+    }
+    
+    private void logIndexingStats(IndexingJob job) {
+        var stats = indexingScheduler.stats();
+        Oracle.LOGGER.info("First semantic results after {} ms; {} slices, {} ms indexing, {} ms paused, {} backoffs, {} of {} frames slow (frame time {} ms, baseline {} ms)",
+          job.searchableAfterMillis(), stats.slices(), stats.busyMillis(), stats.pausedMillis(), stats.backoffs(), stats.slowFrames(), stats.indexingFrames(),
+          String.format(Locale.ROOT, "%.1f", stats.indexingFrameMillis()), String.format(Locale.ROOT, "%.1f", stats.baselineFrameMillis()));
+    }
+    
+    /**
+     * Starts loading the embedding model in the background, so the first query doesn't wait for it.
+     */
+    public void prewarm() {
+        if (isSemanticReady()) embeddingModel.prewarm();
+    }
+    
+    /**
+     * Prebuilt indexes are placed next to the pages, e.g. books/&lt;wiki&gt;/.search/embeddings-&lt;model&gt;.bin. Only the
+     * ones of the active model are used.
+     */
+    public static String prebuiltIndexFile(String modelId) {
+        return PREBUILT_INDEX_DIR + "embeddings-" + modelId + ".bin";
+    }
+    
+    /**
+     * Registers the available embedding models and selects the configured one, once. Runs on the indexing thread:
+     * checking whether the ONNX runtime works unpacks and loads its natives, which shouldn't stall a resource reload.
+     */
+    private EmbeddingProvider selectEmbeddingProvider() {
+        var provider = embeddingProvider;
+        if (provider == null) {
+            EmbeddingProviders.registerDefaults(getCacheDir().resolve("model"), Platform.getConfigFolder().resolve(Oracle.MOD_ID).resolve("models"));
+            provider = EmbeddingProviders.select(OracleConfig.get().embeddingModel);
+            Oracle.LOGGER.info("Using embedding model {}", provider.description());
+            modelMissing = !provider.isAvailable();
+            embeddingProvider = provider;
         }
-        
-        return FINISHED.get();
+        return provider;
     }
     
     public ArrayList<SearchResult> search(String query) {
-        var queryEmbedding = embeddingModel.embed(query).content();
+        
+        var progressVersion = OracleProgressAPI.GetProgressVersion();
+        if (progressVersion != resultsProgressVersion) {
+            // unlocks changed, cached result lists may show or hide the wrong pages
+            queryResults.clear();
+            resultsProgressVersion = progressVersion;
+        }
+        
+        var cachedResults = queryResults.get(query);
+        if (cachedResults != null) return new ArrayList<>(cachedResults);
+        
+        var parsed = parseQuery(query);
+        var text = parsed.text();
+        if (text.isEmpty()) return new ArrayList<>();
+        // locked pages are excluded inside the scan, so they don't take away result slots
+        var filter = parsed.filter().exclude("page", lockedPages);
+        
+        if (baseShard.lexicalIndex != null) {
+            var shards = activeShards();
+            var keywordQuery = shards.stream().anyMatch(shard -> shard.isKeywordQuery(text));
+            if (keywordQuery || !isSemanticReady()) {
+                // fallback results are replaced by semantic ones once those are ready, so only keyword hits are cached
+                var results = groupByPage(merge(shards, shard -> shard.searchLexical(text, filter, candidateChunks)), !keywordQuery && isIndexing());
+                if (keywordQuery) queryResults.put(query, results);
+                return new ArrayList<>(results);
+            }
+        }
+        
+        var queryEmbedding = queryEmbeddings.get(text);
+        if (queryEmbedding == null) {
+            queryEmbedding = embeddingModel.query().embed(text).content();
+            queryEmbeddings.put(text, queryEmbedding);
+        }
         
         var searchRequest = EmbeddingSearchRequest.builder()
                               .queryEmbedding(queryEmbedding)
-                              .maxResults(15)
+                              .maxResults(candidateChunks)
                               .minScore(0.6)
+                              .filter(filter.isEmpty() ? null : filter)
                               .build();
         
-        var matches = embeddingStore.search(searchRequest).matches();
-        var results = new ArrayList<SearchResult>();
+        List<SearchResult> results;
+        storeLock.readLock().lock();
+        try {
+            var partial = partialIndex;
+            var startedAt = System.nanoTime();
+            results = groupByPage(merge(activeShards(), shard -> shard.searchSemantic(searchRequest, text, filter)), partial);
+            Oracle.LOGGER.debug("Vector search for '{}' took {} us", text, (System.nanoTime() - startedAt) / 1000);
+            // still under the lock, so a result from before a reload can't be cached after it cleared the cache
+            if (!partial) queryResults.put(query, results);
+        } finally {
+            storeLock.readLock().unlock();
+        }
+        
+        return new ArrayList<>(results);
+    }
+    
+    /**
+     * Splits the {@code wiki:} and {@code mode:} prefixes off a query. Several values of the same prefix are combined,
+     * so {@code wiki:oritech wiki:ae2} searches both wikis.
+     */
+    private static ParsedQuery parseQuery(String query) {
+        var wikis = new HashSet<String>();
+        var modes = new HashSet<String>();
+        var matcher = FILTER_PREFIX.matcher(query);
+        while (matcher.find()) {
+            var value = matcher.group(2).toLowerCase(Locale.ROOT);
+            if (matcher.group(1).equals("wiki")) {
+                wikis.add(value);
+            } else {
+                modes.add(value);
+            }
+        }
+        
+        var filter = FacetFilter.none();
+        if (!wikis.isEmpty()) filter = filter.require("wiki", wikis);
+        if (!modes.isEmpty()) filter = filter.require("mode", modes);
+        var text = matcher.replaceAll("").trim().replaceAll("\\s+", " ");
+        return new ParsedQuery(text, filter);
+    }
+    
+    /**
+     * Re-evaluates which pages are locked, if the player's progress changed since the last call.
+     * Has to run on the client thread, {@link #search(String)} uses the result from the last call.
+     */
+    public void refreshUnlocks() {
+        var version = OracleProgressAPI.GetProgressVersion();
+        if (version == lockedPagesVersion) return;
+        
+        var locked = new HashSet<String>();
+        OracleClient.UNLOCK_CRITERIONS.forEach((path, unlock) -> {
+            // e.g. "books/oritech/docs/reactor.mdx", the result id is "oritech:docs/reactor.mdx"
+            var parts = path.split("/", 3);
+            if (parts.length < 3) return;
+            if (!OracleProgressAPI.IsUnlocked(parts[1], parts[2], unlock.getLeft(), unlock.getRight()))
+                locked.add(parts[1] + ":" + parts[2]);
+        });
+        lockedPages = Set.copyOf(locked);
+        lockedPagesVersion = version;
+    }
+    
+    /**
+     * Shards to search, the active language first.
+     */
+    private List<IndexShard> activeShards() {
+        var locale = localeShard;
+        return locale == null ? List.of(baseShard) : List.of(locale, baseShard);
+    }
+    
+    /**
+     * Combines the matches of all shards. Pages found in an earlier shard are skipped in later ones,
+     * so a translated page hides its untranslated original.
+     */
+    private static List<ScoredSegment> merge(List<IndexShard> shards, Function<IndexShard, List<ScoredSegment>> search) {
+        if (shards.size() == 1) return search.apply(shards.getFirst());
         
+        var matches = new ArrayList<ScoredSegment>();
+        var coveredPages = new HashSet<String>();
+        for (var shard : shards) {
+            for (var match : search.apply(shard)) {
+                if (!coveredPages.contains(pageKey(match.segment()))) matches.add(match);
+            }
+            coveredPages.addAll(shard.resultIds);
+        }
+        return matches;
+    }
+    
+    /**
+     * Groups the chunk matches into pages and keeps the best {@link #MAX_RESULTS} pages, see {@link PageAggregator}.
+     *
+     * @param partial whether the index doesn't contain all pages yet, passed on to the results
+     */
+    private List<SearchResult> groupByPage(List<ScoredSegment> matches, boolean partial) {
+        var aggregator = new PageAggregator<String, ScoredSegment>(pageScoreTemperature);
         for (var match : matches) {
-            
-            var id = match.embedded().metadata().getString("wiki") + ":" + match.embedded().metadata().getString("category") + match.embedded().metadata().getString("fileName");
-            var title = match.embedded().metadata().getString("title");
+            aggregator.add(pageKey(match.segment()), match, match.score());
+        }
+        
+        var results = new ArrayList<SearchResult>();
+        for (var page : aggregator.top(MAX_RESULTS)) {
+            var best = page.chunks().getFirst().chunk().segment().metadata();
+            var id = Identifier.of(page.key());
+            var title = best.getString("title");
             if (title == null) {
-                title = TitleLookup.getTitle(Identifier.of(id));
+                title = TitleLookup.getTitle(id);
             }
             
-            // check if id already exists, add it to alt texts
-            var existingCandidate = results.stream().filter(result -> result.id.equals(Identifier.of(id))).findFirst();
-            if (existingCandidate.isPresent()) {
-                existingCandidate.get().texts.add(match.embedded().text());
-            } else {
-                var list = new ArrayList<String>();
-                list.add(match.embedded().text());
-                var icon = match.embedded().metadata().getString("icon");
-                if ((icon == null || icon.isBlank()) && match.embedded().metadata().containsKey("id"))
-                    icon = match.embedded().metadata().getString("id");
-                var step = new SearchResult(list, match.score(), title, Identifier.of(id), icon);
-                results.add(step);
-            }
+            var icon = best.getString("icon");
+            if ((icon == null || icon.isBlank()) && best.containsKey("id"))
+                icon = best.getString("id");
+            
+            var texts = page.chunks().stream().map(chunk -> chunk.chunk().segment().text()).toList();
+            var previews = page.chunks().stream().map(chunk -> chunk.chunk().preview()).toList();
+            results.add(new SearchResult(texts, previews, page.maxScore(), title, id, icon, partial));
         }
         
-        return results;
+        return List.copyOf(results);
         
     }
     
-    public void queueEmbeddingsJob(String wikiId, String filePath, String fileName, Map<String, String> frontmatter, String content, String title) {
+    /**
+     * Instant suggestions for page titles and item names, cheap enough to run on every keystroke.
+     * Suggestions have no preview texts. Called on the client thread, so this also refreshes the locked pages.
+     */
+    public List<SearchResult> suggest(String query) {
+        refreshUnlocks();
         
-        var document = Document.from(content, Metadata.from(frontmatter));
-        document.metadata().put("fileName", fileName);
-        document.metadata().put("category", filePath);
-        document.metadata().put("wiki", wikiId);
-        if (title != null) document.metadata().put("title", title);
-        ingestor.ingest(document);
+        var sources = titleSources;
+        if (typeahead == null || typeaheadSources != sources) {
+            typeahead = buildTypeahead(sources);
+            typeaheadSources = sources;
+        }
+        
+        var parsed = parseQuery(query);
+        if (parsed.text().isEmpty()) return List.of();
+        var locked = lockedPages;
+        // a few more than needed, some of them may be filtered out
+        return typeahead.suggest(parsed.text(), 20).stream()
+                 .filter(suggestion -> parsed.filter().test(suggestion.metadata()) && !locked.contains(suggestion.result().id().toString()))
+                 .limit(5)
+                 .map(Suggestion::result)
+                 .toList();
+    }
+    
+    /**
+     * Titles of all shards, translated titles replacing the untranslated ones of the same page.
+     */
+    private List<TitleSource> collectTitleSources() {
+        var sources = new ArrayList<TitleSource>();
+        var coveredPages = new HashSet<String>();
+        for (var shard : activeShards()) {
+            for (var source : shard.titleSources) {
+                if (!coveredPages.contains(source.resultId().toString())) sources.add(source);
+            }
+            coveredPages.addAll(shard.resultIds);
+        }
+        return List.copyOf(sources);
+    }
+    
+    private static List<TitleSource> collectTitles(List<IndexingPipeline.PageSource> pages, Map<String, Identifier> contentIds) {
+        var itemsByPage = new HashMap<Identifier, List<String>>();
+        contentIds.forEach((itemId, pageId) -> itemsByPage.computeIfAbsent(pageId, key -> new ArrayList<>()).add(itemId));
+        
+        return pages.stream().map(page -> {
+            var title = page.frontmatter().getOrDefault("title", page.title());
+            var icon = page.frontmatter().get("icon");
+            if (icon == null || icon.isBlank()) icon = page.frontmatter().get("id");
+            // item ids always point to the untranslated page
+            var pageId = Identifier.of(page.id().getNamespace(), ROOT_DIR + "/" + page.wikiId() + "/" + page.category() + page.fileName());
+            return new TitleSource(resultId(page), title, icon, modeOf(page), itemsByPage.getOrDefault(pageId, List.of()));
+        }).toList();
+    }
+    
+    /**
+     * The page a result opens, e.g. {@code oritech:docs/tools/wrench.mdx}. Translated pages use the id of the page
+     * they translate, the wiki screen then shows the translation by itself.
+     */
+    private static Identifier resultId(IndexingPipeline.PageSource page) {
+        return Identifier.of(page.wikiId() + ":" + page.category() + page.fileName());
+    }
+    
+    private static String modeOf(IndexingPipeline.PageSource page) {
+        return OracleClient.getDocsModeForPage(page.id()).name().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Result id of the page a chunk belongs to, as string. Stored in the chunk metadata when the page is indexed.
+     */
+    private static String pageKey(TextSegment segment) {
+        return segment.metadata().getString("page");
+    }
+    
+    private static TitleTypeahead<Suggestion> buildTypeahead(List<TitleSource> sources) {
+        var entries = new ArrayList<TitleTypeahead.Entry<Suggestion>>();
+        for (var source : sources) {
+            var names = new ArrayList<String>();
+            if (source.title() != null) names.add(source.title());
+            for (var itemId : source.itemIds()) {
+                var id = Identifier.tryParse(itemId);
+                if (id == null) continue;
+                names.add(id.getPath());
+                if (Registries.ITEM.containsId(id)) names.add(I18n.translate(Registries.ITEM.get(id).getTranslationKey()));
+            }
+            if (names.isEmpty()) continue;
+            
+            var result = new SearchResult(List.of(), List.of(), 1, names.getFirst(), source.resultId(), source.icon(), false);
+            // same facets as the chunks, so query prefixes filter suggestions the same way
+            var metadata = Metadata.from(Map.of("wiki", source.resultId().getNamespace(), "mode", source.mode()));
+            var suggestion = new Suggestion(result, metadata);
+            names.forEach(name -> entries.add(new TitleTypeahead.Entry<>(name, suggestion)));
+        }
+        return TitleTypeahead.build(entries);
+    }
+    
+    private static String lexicalText(TextSegment segment) {
+        var title = segment.metadata().getString("title");
+        return title == null ? segment.text() : title + "\n" + segment.text();
+    }
+    
+    private static Path getCacheDir() {
+        return Platform.getGameFolder().resolve(".cache").resolve(Oracle.MOD_ID);
+    }
+    
+    private Path getCacheFile() {
+        return getCacheDir().resolve("embeddings-" + embeddingProvider.id() + ".bin");
+    }
+    
+    /**
+     * Closes the shard of the previous language, it is rebuilt from the cache if the language is selected again.
+     */
+    private void dropLocaleShard() {
+        var shard = localeShard;
+        storeLock.writeLock().lock();
+        try {
+            localeShard = null;
+            queryResults.clear();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+        shard.close();
+        Oracle.LOGGER.info("Dropped search index for {}", shard.locale);
+    }
+    
+    /**
+     * Index of the pages of one language: vectors, keyword index and page titles. All fields except the volatile ones
+     * are only touched by the coordinator thread.
+     */
+    private class IndexShard {
+        
+        private final String locale;
+        private final OffHeapEmbeddingStore embeddingStore;
+        // resource id -> indexed state
+        private final Map<Identifier, IndexedPage> indexedPages = new HashMap<>();
+        // resource id -> chunks, source of the lexical index
+        private final Map<Identifier, LexicalPage> lexicalPages = new HashMap<>();
+        // page key -> chunk text -> preview, looked up for the matches of both search paths
+        private final Map<String, Map<String, SearchPreview>> previews = new ConcurrentHashMap<>();
+        // rebuilt as a whole on changes, available before the embedding model is loaded
+        private volatile LexicalIndex<LexicalChunk> lexicalIndex;
+        private volatile List<TitleSource> titleSources = List.of();
+        // title keys, queries naming a page take the keyword path
+        private volatile Set<String> titleKeys = Set.of();
+        // result ids of all pages in this shard
+        private volatile Set<String> resultIds = Set.of();
+        
+        private IndexShard(String locale) {
+            this.locale = locale;
+            var fileName = locale.equals(BASE_LOCALE) ? "vectors-" + ProcessHandle.current().pid() + ".bin" : "vectors-" + ProcessHandle.current().pid() + "-" + locale + ".bin";
+            this.embeddingStore = new OffHeapEmbeddingStore(getCacheDir().resolve(fileName), storeSettings, FACET_KEYS);
+        }
+        
+        /**
+         * Applies added, changed and removed pages, see {@link #reload()}.
+         *
+         * @return whether anything changed
+         */
+        private boolean update(IndexingJob job, IndexingPipeline pipeline, List<IndexingPipeline.PageSource> pages, Map<String, Identifier> contentIds, @Nullable String activeWiki) {
+            
+            if (!locale.equals(BASE_LOCALE)) pages = pages.stream().map(this::untranslated).toList();
+            
+            titleSources = collectTitles(pages, contentIds);
+            titleKeys = titleSources.stream().map(TitleSource::title).filter(Objects::nonNull).map(LexicalIndex::nameKey).collect(Collectors.toUnmodifiableSet());
+            resultIds = pages.stream().map(page -> resultId(page).toString()).collect(Collectors.toUnmodifiableSet());
+            
+            // diff against the live index
+            var changedPages = new ArrayList<IndexingPipeline.PageSource>();
+            var removedIds = new HashSet<>(indexedPages.keySet());
+            for (var page : pages) {
+                removedIds.remove(page.id());
+                var existing = indexedPages.get(page.id());
+                if (existing == null || !existing.contentHash().equals(page.contentHash()))
+                    changedPages.add(page);
+            }
+            
+            if (changedPages.isEmpty() && removedIds.isEmpty()) return false;
+            
+            var pageChunks = pipeline.split(changedPages);
+            var pageSegments = pageChunks.stream().map(IndexingPipeline.PageChunks::segments).toList();
+            var segments = pageSegments.stream().flatMap(List::stream).toList();
+            for (int i = 0; i < changedPages.size(); i++) {
+                var page = changedPages.get(i);
+                var pageId = resultId(page).toString();
+                var mode = modeOf(page);
+                for (var segment : pageSegments.get(i)) {
+                    segment.metadata().put("page", pageId);
+                    segment.metadata().put("mode", mode);
+                }
+            }
+            
+            // the lexical index only needs the chunks, so keyword search works before the model is even loaded
+            for (var removedId : removedIds) {
+                var removed = lexicalPages.remove(removedId);
+                if (removed != null && !removed.segments().isEmpty()) previews.remove(pageKey(removed.segments().getFirst()));
+            }
+            for (int i = 0; i < changedPages.size(); i++) {
+                lexicalPages.put(changedPages.get(i).id(), new LexicalPage(changedPages.get(i).contentHash(), pageSegments.get(i)));
+                previews.put(resultId(changedPages.get(i)).toString(), previewsByText(pageChunks.get(i)));
+            }
+            lexicalIndex = LexicalIndex.build(lexicalPages.entrySet().stream()
+                                                .flatMap(entry -> IntStream.range(0, entry.getValue().segments().size())
+                                                                    .mapToObj(index -> new LexicalChunk(entry.getValue().segments().get(index), entry.getKey(), entry.getValue().contentHash(), index)))
+                                                .map(chunk -> new LexicalIndex.Document<>(lexicalText(chunk.segment()), chunk))
+                                                .toList());
+            queryResults.clear();
+            if (this == baseShard) readiness.markReady();
+            
+            if (indexedPages.isEmpty()) {
+                addProgressively(job, pipeline, changedPages, pageSegments, activeWiki);
+                Oracle.LOGGER.info("Built search index for {}: {} pages, {} chunks", locale, changedPages.size(), segments.size());
+                return true;
+            }
+            
+            // embed outside of the lock, the current index stays searchable meanwhile
+            var embeddings = pipeline.embed(embeddingModel::ingest, segments);
+            
+            var staleSegmentIds = new ArrayList<String>();
+            for (var page : changedPages) {
+                var existing = indexedPages.get(page.id());
+                if (existing != null) staleSegmentIds.addAll(existing.segmentIds());
+            }
+            for (var removedId : removedIds) {
+                staleSegmentIds.addAll(indexedPages.get(removedId).segmentIds());
+            }
+            
+            // last chance to stop, past this point the update is applied as a whole
+            job.checkCancelled();
+            
+            storeLock.writeLock().lock();
+            try {
+                if (!staleSegmentIds.isEmpty()) embeddingStore.removeAll(staleSegmentIds);
+                var segmentIds = segments.isEmpty() ? List.<String>of() : embeddingStore.addAll(embeddings, segments);
+                
+                var offset = 0;
+                for (int i = 0; i < changedPages.size(); i++) {
+                    var page = changedPages.get(i);
+                    var count = pageSegments.get(i).size();
+                    indexedPages.put(page.id(), new IndexedPage(page.contentHash(), List.copyOf(segmentIds.subList(offset, offset + count))));
+                    offset += count;
+                }
+                removedIds.forEach(indexedPages::remove);
+                queryResults.clear();
+                job.markSearchable();
+            } finally {
+                storeLock.writeLock().unlock();
+            }
+            // the new chunks are already searchable, linking them into the graph doesn't need to block searches
+            embeddingStore.updateGraph();
+            
+            Oracle.LOGGER.info("Updated search index for {}: {} pages updated, {} removed, {} chunks", locale, changedPages.size(), removedIds.size(), segments.size());
+            return true;
+        }
+        
+        /**
+         * Builds a new shard in waves, each one searchable as soon as it is embedded, so queries are answered long before
+         * all pages are done. The most useful chunks go first: the opening chunk (title and introduction) of every page of
+         * the wiki the player last looked at, then the rest of those pages, then the other wikis in the same order. Waves
+         * start small, so the first answer comes quickly, and grow to keep the per-wave overhead low.
+         *
+         * <p>A shard with nothing indexed has no previous state to keep consistent, but its pages are only registered once
+         * all waves are in. A cancelled or failed build removes its chunks again, the next job starts from the cache.</p>
+         */
+        private void addProgressively(IndexingJob job, IndexingPipeline pipeline, List<IndexingPipeline.PageSource> pages,
+                                      List<List<TextSegment>> pageSegments, @Nullable String activeWiki) {
+            
+            var order = new ArrayList<SegmentRef>();
+            for (int page = 0; page < pages.size(); page++) {
+                for (int segment = 0; segment < pageSegments.get(page).size(); segment++) order.add(new SegmentRef(page, segment));
+            }
+            order.sort(Comparator.comparingInt(ref -> (pages.get(ref.page()).wikiId().equals(activeWiki) ? 0 : 2) + (ref.segment() == 0 ? 0 : 1)));
+            
+            var segmentIds = new String[pages.size()][];
+            for (int page = 0; page < pages.size(); page++) segmentIds[page] = new String[pageSegments.get(page).size()];
+            var addedIds = new ArrayList<String>();
+            
+            try {
+                var waveSize = FIRST_WAVE_SIZE;
+                for (int start = 0; start < order.size(); start += waveSize, waveSize = Math.min(MAX_WAVE_SIZE, waveSize * 2)) {
+                    var wave = order.subList(start, Math.min(order.size(), start + waveSize));
+                    var waveSegments = wave.stream().map(ref -> pageSegments.get(ref.page()).get(ref.segment())).toList();
+                    var embeddings = pipeline.embed(embeddingModel::ingest, waveSegments);
+                    job.checkCancelled();
+                    
+                    storeLock.writeLock().lock();
+                    try {
+                        var ids = embeddingStore.addAll(embeddings, waveSegments);
+                        for (int i = 0; i < wave.size(); i++) segmentIds[wave.get(i).page()][wave.get(i).segment()] = ids.get(i);
+                        addedIds.addAll(ids);
+                        partialIndex = true;
+                        job.markSearchable();
+                    } finally {
+                        storeLock.writeLock().unlock();
+                    }
+                    embeddingStore.updateGraph();
+                }
+                
+                storeLock.writeLock().lock();
+                try {
+                    for (int page = 0; page < pages.size(); page++) {
+                        indexedPages.put(pages.get(page).id(), new IndexedPage(pages.get(page).contentHash(), List.of(segmentIds[page])));
+                    }
+                    queryResults.clear();
+                } finally {
+                    storeLock.writeLock().unlock();
+                }
+            } catch (RuntimeException e) {
+                storeLock.writeLock().lock();
+                try {
+                    if (!addedIds.isEmpty()) embeddingStore.removeAll(addedIds);
+                    queryResults.clear();
+                } finally {
+                    storeLock.writeLock().unlock();
+                }
+                throw e;
+            }
+        }
+        
+        /**
+         * Moves a translated page to the category of its original, e.g. "translated/ja_jp/docs/" to "docs/".
+         */
+        private IndexingPipeline.PageSource untranslated(IndexingPipeline.PageSource page) {
+            var marker = locale + "/";
+            var index = page.category().indexOf(marker);
+            if (index < 0) return page;
+            var category = page.category().substring(index + marker.length());
+            return new IndexingPipeline.PageSource(page.id(), page.wikiId(), category, page.fileName(), page.frontmatter(), page.content(), page.title(), page.contentHash());
+        }
+        
+        private boolean isKeywordQuery(String query) {
+            var lexical = lexicalIndex;
+            return lexical != null && lexical.isKeywordQuery(query, titleKeys);
+        }
+        
+        private List<ScoredSegment> searchLexical(String query, FacetFilter filter, int maxResults) {
+            var lexical = lexicalIndex;
+            if (lexical == null) return List.of();
+            return lexical.search(query, maxResults, chunk -> filter.test(chunk.segment().metadata())).stream()
+                     .map(hit -> new ScoredSegment(hit.payload().segment(), previewOf(hit.payload().segment()), hit.score()))
+                     .toList();
+        }
+        
+        /**
+         * Scores the query embedding against the chunk vectors. Large shards only score the chunks the keyword index
+         * picks for the query, unless it finds too few, see {@link TwoStageRetrieval}. Callers hold the store read lock.
+         */
+        private List<ScoredSegment> searchSemantic(EmbeddingSearchRequest request, String query, FacetFilter filter) {
+            Set<String> candidates = null;
+            var lexical = lexicalIndex;
+            var chunkCount = embeddingStore.size();
+            if (lexical != null && twoStageRetrieval.appliesTo(chunkCount)) {
+                candidates = twoStageRetrieval.candidates(lexical, query, chunk -> filter.test(chunk.segment().metadata()), this::segmentId);
+                Oracle.LOGGER.debug("Keyword stage for '{}' in {}: {}", query, locale, candidates == null ? "too few candidates, scoring all " + chunkCount + " chunks" : candidates.size() + " of " + chunkCount + " chunks");
+            }
+            return embeddingStore.search(request, candidates).matches().stream()
+                     .map(match -> new ScoredSegment(match.embedded(), previewOf(match.embedded()), match.score()))
+                     .toList();
+        }
+        
+        /**
+         * @return the store id of a chunk, or null if its page is not embedded (yet) in this version
+         */
+        @Nullable
+        private String segmentId(LexicalChunk chunk) {
+            var page = indexedPages.get(chunk.resourceId());
+            if (page == null || !page.contentHash().equals(chunk.contentHash()) || chunk.index() >= page.segmentIds().size()) return null;
+            return page.segmentIds().get(chunk.index());
+        }
+        
+        private SearchPreview previewOf(TextSegment segment) {
+            var page = previews.get(pageKey(segment));
+            var preview = page == null ? null : page.get(segment.text());
+            return preview != null ? preview : SearchPreview.plain(segment.text());
+        }
+        
+        private static Map<String, SearchPreview> previewsByText(IndexingPipeline.PageChunks chunks) {
+            var byText = new HashMap<String, SearchPreview>();
+            for (int i = 0; i < chunks.segments().size(); i++) byText.putIfAbsent(chunks.segments().get(i).text(), chunks.previews().get(i));
+            return Map.copyOf(byText);
+        }
+        
+        /**
+         * Marks the cached vectors of all chunks in this shard as used, so saving the cache keeps pages that weren't
+         * embedded again by this job.
+         */
+        private void markCached(EmbeddingCache cache) {
+            for (var page : lexicalPages.values()) {
+                for (var segment : page.segments()) cache.markUsed(segment.text());
+            }
+        }
+        
+        private void close() {
+            embeddingStore.close();
+        }
+        
+    }
+    
+    private record IndexedPage(String contentHash, List<String> segmentIds) {
+    }
+    
+    private record SegmentRef(int page, int segment) {
+    }
+    
+    private record LexicalPage(String contentHash, List<TextSegment> segments) {
+    }
+    
+    // payload of the lexical index, locates the chunk among the store ids of its page
+    private record LexicalChunk(TextSegment segment, Identifier resourceId, String contentHash, int index) {
+    }
+    
+    private record ScoredSegment(TextSegment segment, SearchPreview preview, double score) {
+    }
+    
+    private record TitleSource(Identifier resultId, @Nullable String title, @Nullable String icon, String mode, List<String> itemIds) {
+    }
+    
+    private record Suggestion(SearchResult result, Metadata metadata) {
+    }
+    
+    private record ParsedQuery(String text, FacetFilter filter) {
     }
     
-    public record SearchResult(List<String> texts, double bestScore, String title, Identifier id, String iconName) {
+    /**
+     * @param previews styled previews of the {@code texts}, at the same positions
+     * @param partial  found while the index was still being built, searching again later may find better matches
+     */
+    public record SearchResult(List<String> texts, List<SearchPreview> previews, double bestScore, String title, Identifier id, String iconName, boolean partial) {
     }
     
 }
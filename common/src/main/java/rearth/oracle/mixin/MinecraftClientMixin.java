@@ -0,0 +1,18 @@
+package rearth.oracle.mixin;
+
+import net.minecraft.client.MinecraftClient;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import rearth.oracle.OracleClient;
+
+@Mixin(MinecraftClient.class)
+public class MinecraftClientMixin {
+    
+    @Inject(method = "render", at = @At("TAIL"))
+    private void reportFrameRendered(boolean tick, CallbackInfo ci) {
+        OracleClient.onFrameRendered((MinecraftClient) (Object) this);
+    }
+    
+}
@@ -4,6 +4,7 @@ import rearth.oracle.Oracle;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * API for managing and validating progress unlocks for Oracle Wiki entries.
@@ -12,6 +13,7 @@ import java.util.Map;
 public class OracleProgressAPI {
     
     private static final Map<String, ProgressValidator> REGISTERED_VALIDATORS = new HashMap<>();
+    private static final AtomicInteger PROGRESS_VERSION = new AtomicInteger();
     
     /**
      * Checks if a specific entry in a book is unlocked based on the provided validator type and target.
@@ -44,6 +46,21 @@ public class OracleProgressAPI {
         REGISTERED_VALIDATORS.put(validatorId, validator);
     }
     
+    /**
+     * Signals that the player's progress changed, so previously computed unlock results may be outdated.
+     * Advancement updates are reported automatically; custom validators should call this when their state changes.
+     */
+    public static void NotifyProgressChanged() {
+        PROGRESS_VERSION.incrementAndGet();
+    }
+    
+    /**
+     * @return A counter that increases whenever the player's progress changed.
+     */
+    public static int GetProgressVersion() {
+        return PROGRESS_VERSION.get();
+    }
+    
     @FunctionalInterface
     public interface ProgressValidator {
         
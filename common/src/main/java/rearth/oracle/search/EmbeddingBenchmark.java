@@ -0,0 +1,196 @@
+package rearth.oracle.search;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import rearth.oracle.OracleConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the {@link EmbeddingProvider}s on the local machine, using the chunks of a wiki folder. For every model it
+ * reports the load time, the latency of embedding a single query (what a player waits for while typing), the same
+ * latency while indexing runs in the background, the indexing throughput, and the size of the resulting index file. It also compares scoring every chunk vector against the
+ * {@link TwoStageRetrieval} cascade: the latency of both, and how many of the full scan's top results the cascade finds.
+ *
+ * <p>Runs outside the game, like the {@link PrebuiltIndexGenerator}.</p>
+ *
+ * <p>Usage: {@code EmbeddingBenchmark <wiki folder> [model...]}, where each model is the id of an
+ * {@link EmbeddingProvider} or the folder of a custom model. Without models, all registered ones are measured.</p>
+ */
+public class EmbeddingBenchmark {
+
+    private static final int QUERY_COUNT = 100;
+    private static final int WARMUP_QUERIES = 10;
+    private static final int TOP_K = 10;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: EmbeddingBenchmark <wiki folder> [model...]");
+            System.exit(1);
+        }
+
+        var texts = new LinkedHashSet<String>();
+        for (var file : PrebuiltIndexGenerator.indexedPages(Path.of(args[0]))) {
+            texts.addAll(IndexingPipeline.chunkTexts(Files.readString(file, StandardCharsets.UTF_8)));
+        }
+        var chunks = texts.stream().map(TextSegment::from).toList();
+        var queries = queries(List.copyOf(texts));
+
+        EmbeddingProviders.register(OnnxEmbeddingProvider.bundled(Files.createTempDirectory("oracle-models")));
+        var providers = new ArrayList<EmbeddingProvider>();
+        if (args.length == 1) {
+            providers.addAll(EmbeddingProviders.all());
+        } else {
+            for (int i = 1; i < args.length; i++) providers.add(EmbeddingProviders.forTool(args[i]));
+        }
+
+        System.out.printf(Locale.ROOT, "%d chunks, %d queries, %d cores%n%n", chunks.size(), queries.size(), Runtime.getRuntime().availableProcessors());
+        System.out.printf(Locale.ROOT, "%-24s %10s %12s %12s %16s %14s %12s %14s %14s %12s%n", "model", "load ms", "query p50 ms", "query p95 ms",
+          "indexing p50 ms", "chunks/s", "index KiB", "full scan us", "two-stage us", "top-" + TOP_K + " kept");
+        for (var provider : providers) {
+            if (!provider.isAvailable()) {
+                System.out.printf(Locale.ROOT, "%-24s not available%n", provider.id());
+                continue;
+            }
+            var result = measure(provider, chunks, queries);
+            System.out.printf(Locale.ROOT, "%-24s %10.0f %12.2f %12.2f %16.2f %14.1f %12d %14.1f %14.1f %11.0f%%%n", provider.id(),
+              result.loadMillis(), result.queryP50Millis(), result.queryP95Millis(), result.busyQueryP50Millis(), result.chunksPerSecond(), result.indexBytes() / 1024,
+              result.fullScanMicros(), result.twoStageMicros(), result.twoStageOverlap() * 100);
+        }
+    }
+
+    public static Result measure(EmbeddingProvider provider, List<TextSegment> chunks, List<String> queries) throws IOException {
+        var defaults = new OracleConfig();
+        var executor = Executors.newFixedThreadPool(IndexingPipeline.getWorkerCount());
+        // the same lanes the game uses, never unloaded while measuring
+        var models = new EmbeddingModelManager(lane -> lane == EmbeddingModelManager.Lane.QUERY
+                                                         ? provider.create(Runnable::run, defaults.queryIntraOpThreads)
+                                                         : provider.create(executor, defaults.ingestIntraOpThreads),
+          IndexingPipeline.getWorkerCount(), 0, IndexingScheduler.unthrottled());
+        var cacheFile = Files.createTempFile("oracle-benchmark-" + provider.id(), ".bin");
+        var busyCacheFile = Files.createTempFile("oracle-benchmark-busy-" + provider.id(), ".bin");
+        try {
+            var startedAt = System.nanoTime();
+            var model = models.query();
+            model.embed("warmup");
+            var loadMillis = (System.nanoTime() - startedAt) / 1e6;
+
+            for (int i = 0; i < Math.min(WARMUP_QUERIES, queries.size()); i++) model.embed(queries.get(i));
+            var latencies = new double[queries.size()];
+            for (int i = 0; i < queries.size(); i++) {
+                var queryStart = System.nanoTime();
+                model.embed(queries.get(i));
+                latencies[i] = (System.nanoTime() - queryStart) / 1e6;
+            }
+            Arrays.sort(latencies);
+
+            // a fresh cache, so every chunk goes through the model like on a first launch
+            Files.delete(cacheFile);
+            var cache = EmbeddingCache.load(cacheFile, provider.id());
+            var pipeline = new IndexingPipeline(executor, cache);
+            var indexStart = System.nanoTime();
+            var embeddings = pipeline.embed(models::ingest, chunks);
+            var indexSeconds = (System.nanoTime() - indexStart) / 1e9;
+            cache.save();
+
+            // queries while all chunks are indexed again, like a player searching during the first indexing
+            Files.delete(busyCacheFile);
+            var busyPipeline = new IndexingPipeline(executor, EmbeddingCache.load(busyCacheFile, provider.id()));
+            var indexing = CompletableFuture.runAsync(() -> busyPipeline.embed(models::ingest, chunks));
+            var busyLatencies = new ArrayList<Double>();
+            for (int i = 0; !indexing.isDone() && !queries.isEmpty(); i++) {
+                var queryStart = System.nanoTime();
+                model.embed(queries.get(i % queries.size()));
+                busyLatencies.add((System.nanoTime() - queryStart) / 1e6);
+            }
+            indexing.join();
+            var busy = busyLatencies.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+
+            var retrieval = compareRetrieval(model, chunks, embeddings, queries);
+            return new Result(loadMillis, percentile(latencies, 0.5), percentile(latencies, 0.95), percentile(busy, 0.5),
+              chunks.size() / Math.max(indexSeconds, 1e-9), Files.size(cacheFile), retrieval[0], retrieval[1], retrieval[2]);
+        } finally {
+            models.unload();
+            executor.shutdown();
+            Files.deleteIfExists(cacheFile);
+            Files.deleteIfExists(busyCacheFile);
+        }
+    }
+
+    /**
+     * Searches every query once by scoring all chunks, and once through the keyword cascade with the default config.
+     *
+     * @return mean full scan microseconds, mean cascade microseconds (including the keyword stage), and the share of
+     * the full scan's top results the cascade also returned
+     */
+    private static double[] compareRetrieval(EmbeddingModel model, List<TextSegment> chunks, List<Embedding> embeddings, List<String> queries) {
+        var defaults = new OracleConfig();
+        // the threshold keeps the store from building a graph, so the baseline really scores every row
+        var settings = new OffHeapEmbeddingStore.Settings(new HnswIndex.Parameters(defaults.hnswM, defaults.hnswEfConstruction, defaults.hnswEfSearch), Integer.MAX_VALUE, false, 0);
+        var cascade = new TwoStageRetrieval(defaults.lexicalCandidates, defaults.minLexicalCandidates, 0);
+        try (var store = new OffHeapEmbeddingStore(null, settings)) {
+            var ids = store.addAll(embeddings, chunks);
+            var lexical = LexicalIndex.build(IntStream.range(0, chunks.size()).mapToObj(i -> new LexicalIndex.Document<>(chunks.get(i).text(), ids.get(i))).toList());
+
+            var fullNanos = 0L;
+            var cascadeNanos = 0L;
+            var kept = 0;
+            var expected = 0;
+            for (var query : queries) {
+                var request = EmbeddingSearchRequest.builder().queryEmbedding(model.embed(query).content()).maxResults(TOP_K).minScore(0.0).build();
+
+                var startedAt = System.nanoTime();
+                var full = store.search(request).matches();
+                fullNanos += System.nanoTime() - startedAt;
+
+                startedAt = System.nanoTime();
+                var candidates = cascade.candidates(lexical, query, id -> true, id -> id);
+                var staged = store.search(request, candidates).matches();
+                cascadeNanos += System.nanoTime() - startedAt;
+
+                var stagedIds = staged.stream().map(EmbeddingMatch::embeddingId).collect(Collectors.toSet());
+                for (var match : full) if (stagedIds.contains(match.embeddingId())) kept++;
+                expected += full.size();
+            }
+            var count = Math.max(1, queries.size());
+            return new double[]{fullNanos / 1e3 / count, cascadeNanos / 1e3 / count, expected == 0 ? 1 : kept / (double) expected};
+        }
+    }
+
+    /**
+     * Short queries made from the start of the chunks, about as long as what players type.
+     */
+    private static List<String> queries(List<String> chunkTexts) {
+        var queries = new ArrayList<String>();
+        for (int i = 0; i < chunkTexts.size() && queries.size() < QUERY_COUNT; i++) {
+            var words = chunkTexts.get(i).split("\\s+");
+            queries.add(String.join(" ", Arrays.copyOfRange(words, 0, Math.min(6, words.length))));
+        }
+        return queries;
+    }
+
+    private static double percentile(double[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.floor(percentile * sorted.length))];
+    }
+
+    public record Result(double loadMillis, double queryP50Millis, double queryP95Millis, double busyQueryP50Millis, double chunksPerSecond, long indexBytes,
+                         double fullScanMicros, double twoStageMicros, double twoStageOverlap) {
+    }
+
+}
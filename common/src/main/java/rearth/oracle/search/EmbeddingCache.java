@@ -0,0 +1,225 @@
+package rearth.oracle.search;
+
+import org.jetbrains.annotations.Nullable;
+import rearth.oracle.Oracle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-addressed cache of chunk embeddings, persisted as a compact binary file.
+ * Entries are keyed by a hash of the embedding model id and the chunk text, so any
+ * chunk that was embedded in a previous session can be reused without running the model.
+ *
+ * <p>File layout: magic, version, model id, vector dimension, entry count, then per entry
+ * the two key halves followed by {@code dimension} floats.</p>
+ *
+ * <p>Prebuilt files in the same format can be shipped inside mod jars (see {@link PrebuiltIndexGenerator}).
+ * Those are added with {@link #addBundled}; they are looked up like normal entries, but never written back.</p>
+ */
+public class EmbeddingCache {
+
+    private static final int MAGIC = 0x4F494543; // "OIEC"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final String modelId;
+    private final Map<ChunkKey, float[]> entries = new ConcurrentHashMap<>();
+    private final Map<ChunkKey, float[]> bundled = new ConcurrentHashMap<>();
+    private final Set<ChunkKey> used = ConcurrentHashMap.newKeySet();
+    private volatile int dimension = -1;
+    private volatile boolean dirty = false;
+
+    private EmbeddingCache(Path file, String modelId) {
+        this.file = file;
+        this.modelId = modelId;
+    }
+
+    /**
+     * Loads the cache file for the given model. A missing, corrupt or foreign-model file
+     * results in an empty cache, which is then overwritten on the next {@link #save()}.
+     */
+    public static EmbeddingCache load(Path file, String modelId) {
+        var cache = new EmbeddingCache(file, modelId);
+        if (!Files.isRegularFile(file)) return cache;
+
+        try (var in = Files.newInputStream(file)) {
+            var dimension = cache.readEntries(in, cache.entries, file.toString());
+            if (dimension != -1) cache.dimension = dimension;
+        } catch (IOException e) {
+            Oracle.LOGGER.warn("Unable to read embedding cache {}, starting with an empty one: {}", file, e.getMessage());
+            cache.entries.clear();
+        }
+
+        return cache;
+    }
+
+    /**
+     * Adds a prebuilt index, e.g. one shipped in a mod jar. Files for other models or with a different
+     * vector size are ignored.
+     */
+    public void addBundled(InputStream stream, String source) {
+        var loaded = new HashMap<ChunkKey, float[]>();
+        try {
+            var bundledDimension = readEntries(stream, loaded, source);
+            if (bundledDimension == -1 || (dimension != -1 && dimension != bundledDimension)) return;
+            bundled.putAll(loaded);
+            Oracle.LOGGER.info("Loaded {} prebuilt embeddings from {}", loaded.size(), source);
+        } catch (IOException e) {
+            Oracle.LOGGER.warn("Unable to read prebuilt embeddings {}: {}", source, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the vector dimension, or -1 if the stream is not a cache file for this model
+     */
+    private int readEntries(InputStream stream, Map<ChunkKey, float[]> target, String source) throws IOException {
+        var in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            Oracle.LOGGER.warn("Ignoring embedding cache with unknown format: {}", source);
+            return -1;
+        }
+        if (!modelId.equals(in.readUTF())) {
+            Oracle.LOGGER.info("Embedding cache {} was built by a different model, ignoring it", source);
+            return -1;
+        }
+
+        var dimension = in.readInt();
+        var count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            var key = new ChunkKey(in.readLong(), in.readLong());
+            var vector = new float[dimension];
+            for (int j = 0; j < dimension; j++) vector[j] = in.readFloat();
+            target.put(key, vector);
+        }
+        return dimension;
+    }
+
+    /**
+     * Computes the cache key for a chunk. Both the model id and the exact chunk text
+     * are part of the hash, so changed chunks or a different model never hit stale entries.
+     */
+    public static ChunkKey key(String modelId, String text) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelId.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            var hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            return new ChunkKey(readLong(hash, 0), readLong(hash, 8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public ChunkKey key(String text) {
+        return key(modelId, text);
+    }
+
+    @Nullable
+    public float[] get(ChunkKey key) {
+        var vector = entries.get(key);
+        if (vector != null) {
+            used.add(key);
+            return vector;
+        }
+        return bundled.get(key);
+    }
+
+    public void put(ChunkKey key, float[] vector) {
+        if (dimension != -1 && dimension != vector.length) {
+            // model output size changed, everything cached so far is useless
+            entries.clear();
+            used.clear();
+        }
+        dimension = vector.length;
+        entries.put(key, vector);
+        used.add(key);
+        dirty = true;
+    }
+
+    /**
+     * Marks the cached vector of a chunk as still needed, without looking it up. Used for pages that are indexed but
+     * weren't embedded again by this job, so {@link #saveAndPrune()} keeps them.
+     */
+    public void markUsed(String text) {
+        var key = key(text);
+        if (entries.containsKey(key)) used.add(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the cache back to disk if anything was added. All entries are kept, also the ones not used in this
+     * session, e.g. after a cancelled or partial job.
+     */
+    public void save() {
+        write(false);
+    }
+
+    /**
+     * Like {@link #save()}, but drops the entries that were not used in this session if they make up the majority of
+     * the file, in which case they are considered stale (e.g. from removed mods). Only call this once every indexed
+     * chunk was either looked up or {@link #markUsed marked}, otherwise the vectors of unchanged pages are lost.
+     */
+    public void saveAndPrune() {
+        write(true);
+    }
+
+    private synchronized void write(boolean prune) {
+        var dropStale = prune && entries.size() > used.size() * 2;
+        if (!dirty && !dropStale) return;
+        if (dimension == -1) return;
+
+        var toWrite = dropStale ? entries.entrySet().stream().filter(e -> used.contains(e.getKey())).toList() : entries.entrySet().stream().toList();
+
+        try {
+            Files.createDirectories(file.getParent());
+            var temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(modelId);
+                out.writeInt(dimension);
+                out.writeInt(toWrite.size());
+                for (var entry : toWrite) {
+                    out.writeLong(entry.getKey().high());
+                    out.writeLong(entry.getKey().low());
+                    for (var value : entry.getValue()) out.writeFloat(value);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            Oracle.LOGGER.info("Saved {} cached embeddings to {}", toWrite.size(), file);
+        } catch (IOException e) {
+            Oracle.LOGGER.warn("Unable to write embedding cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long result = 0;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return result;
+    }
+
+    public record ChunkKey(long high, long low) {
+    }
+
+}
@@ -0,0 +1,248 @@
+package rearth.oracle.search;
+
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.onnxruntime.OrtSession;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import rearth.oracle.Oracle;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Owns the embedding models and keeps them loaded only while they are in use. Inference runs in two lanes, each with
+ * its own model instance (and so its own ONNX session):
+ * <ul>
+ *     <li>{@link Lane#QUERY} embeds search queries. A player never waits behind bulk indexing, and the session is
+ *     never shared with the indexing threads.</li>
+ *     <li>{@link Lane#INGEST} embeds chunks while indexing. Batches are split into slices, and before every slice the
+ *     lane yields to running queries, for at most {@link #MAX_YIELD_MILLIS}. The slices are paced by an
+ *     {@link IndexingScheduler}, which keeps them from taking frame time while playing.</li>
+ * </ul>
+ * A lane's model is created on its first call, and once it has been idle for {@code idleMillis}, its ONNX session and
+ * tokenizer are closed, freeing their native memory. The ingest model is therefore only loaded while indexing. The
+ * next call (or a {@link #prewarm()}) simply loads it again; indexed vectors are not affected.
+ *
+ * <p>Inference holds the lane's read lock, unloading its write lock, so a model is never closed while it is being used.</p>
+ */
+public class EmbeddingModelManager {
+
+    private static final ScheduledExecutorService LIFECYCLE_THREAD = Executors.newSingleThreadScheduledExecutor(task -> {
+        var thread = new Thread(task, "Oracle Search Model");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final long MAX_YIELD_MILLIS = 250;
+
+    private final LaneModel query;
+    private final LaneModel ingest;
+    private final int ingestSlice;
+    private final long idleMillis;
+    private final IndexingScheduler scheduler;
+
+    /**
+     * @param factory     creates a new model instance for a lane, called again after every unload
+     * @param ingestSlice chunks embedded between two checks for waiting queries, e.g. the number of indexing workers
+     * @param idleMillis  unload a lane after this much time without use, 0 keeps the models loaded forever
+     * @param scheduler   paces the ingest slices
+     */
+    public EmbeddingModelManager(Function<Lane, EmbeddingModel> factory, int ingestSlice, long idleMillis, IndexingScheduler scheduler) {
+        this.query = new LaneModel(Lane.QUERY, factory);
+        this.ingest = new LaneModel(Lane.INGEST, factory);
+        this.ingestSlice = Math.max(1, ingestSlice);
+        this.idleMillis = idleMillis;
+        this.scheduler = scheduler;
+
+        if (idleMillis > 0) {
+            var interval = Math.max(1000, idleMillis / 4);
+            LIFECYCLE_THREAD.scheduleWithFixedDelay(this::unloadIfIdle, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Model for interactive search queries.
+     */
+    public EmbeddingModel query() {
+        return query;
+    }
+
+    /**
+     * Model for indexing, yields to queries between slices of a batch.
+     */
+    public EmbeddingModel ingest() {
+        return ingest;
+    }
+
+    public boolean isLoaded() {
+        return query.model != null;
+    }
+
+    /**
+     * Loads the query model in the background if it isn't loaded, e.g. when the search screen is about to open.
+     */
+    public void prewarm() {
+        query.lastUsed = System.currentTimeMillis();
+        if (query.model != null) return;
+        LIFECYCLE_THREAD.execute(() -> {
+            query.lock.readLock().lock();
+            try {
+                query.loaded();
+            } catch (RuntimeException | LinkageError e) {
+                Oracle.LOGGER.warn("Unable to prewarm embedding model: {}", e.getMessage());
+            } finally {
+                query.lock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Closes the native resources of both lanes now. They are loaded again on the next use.
+     */
+    public void unload() {
+        query.unload();
+        ingest.unload();
+    }
+
+    private void unloadIfIdle() {
+        var now = System.currentTimeMillis();
+        if (query.model != null && now - query.lastUsed > idleMillis) query.unload();
+        if (ingest.model != null && now - ingest.lastUsed > idleMillis) ingest.unload();
+    }
+
+    /**
+     * Waits until no query is running, so a query started during indexing gets the cores first.
+     */
+    private void yieldToQueries() {
+        if (query.running.get() == 0) return;
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_YIELD_MILLIS);
+        while (query.running.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    public enum Lane {
+        QUERY, INGEST
+    }
+
+    private class LaneModel implements EmbeddingModel {
+
+        private final Lane lane;
+        private final Function<Lane, EmbeddingModel> factory;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final AtomicInteger running = new AtomicInteger();
+        private volatile EmbeddingModel model;
+        private volatile long lastUsed;
+
+        private LaneModel(Lane lane, Function<Lane, EmbeddingModel> factory) {
+            this.lane = lane;
+            this.factory = factory;
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+            if (lane == Lane.QUERY) return embedLocked(segments);
+
+            // ingest batches are embedded in slices, checking for queries in between
+            var embeddings = new ArrayList<Embedding>(segments.size());
+            for (int start = 0; start < segments.size(); start += ingestSlice) {
+                yieldToQueries();
+                var slice = segments.subList(start, Math.min(segments.size(), start + ingestSlice));
+                embeddings.addAll(scheduler.runSlice(() -> embedLocked(slice)).content());
+            }
+            return Response.from(embeddings);
+        }
+
+        private Response<List<Embedding>> embedLocked(List<TextSegment> segments) {
+            running.incrementAndGet();
+            lock.readLock().lock();
+            try {
+                lastUsed = System.currentTimeMillis();
+                return loaded().embedAll(segments);
+            } finally {
+                lastUsed = System.currentTimeMillis();
+                lock.readLock().unlock();
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public int dimension() {
+            lock.readLock().lock();
+            try {
+                return loaded().dimension();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void unload() {
+            lock.writeLock().lock();
+            try {
+                if (model == null) return;
+                close(model);
+                model = null;
+                Oracle.LOGGER.info("Unloaded {} embedding model", lane.name().toLowerCase(Locale.ROOT));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private EmbeddingModel loaded() {
+            var current = model;
+            if (current != null) return current;
+
+            synchronized (this) {
+                if (model == null) {
+                    var startedAt = System.nanoTime();
+                    model = factory.apply(lane);
+                    Oracle.LOGGER.info("Loaded {} embedding model in {} ms", lane.name().toLowerCase(Locale.ROOT), (System.nanoTime() - startedAt) / 1_000_000);
+                }
+                return model;
+            }
+        }
+
+    }
+
+    /**
+     * The langchain4j models don't expose a way to close them, so the ONNX session and tokenizer are looked up in
+     * the model fields. The shared ONNX environment is left open, it is reused by the next session.
+     */
+    private static void close(Object model) {
+        try {
+            closeFields(model, 0);
+        } catch (Exception e) {
+            Oracle.LOGGER.warn("Unable to close embedding model, leaving it to the garbage collector: {}", e.getMessage());
+        }
+    }
+
+    private static void closeFields(Object target, int depth) throws Exception {
+        for (var type = target.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (var field : type.getDeclaredFields()) {
+                if (field.getType().isPrimitive() || Modifier.isStatic(field.getModifiers())) continue;
+                field.setAccessible(true);
+                var value = field.get(target);
+                if (value instanceof OrtSession session) {
+                    session.close();
+                } else if (value instanceof HuggingFaceTokenizer tokenizer) {
+                    tokenizer.close();
+                } else if (value != null && !(value instanceof Enum<?>) && depth < 2 && value.getClass().getName().startsWith("dev.langchain4j.model.embedding")) {
+                    closeFields(value, depth + 1);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package rearth.oracle.search;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Embedding backend for the search, registered in {@link EmbeddingProviders}. The player picks one by id in the
+ * config, e.g. a small model for weak machines or a bigger one for better results.
+ *
+ * <p>The id is written into every index file built with the model and is part of every cache key, so vectors of
+ * different models are never mixed. A provider that changes its model has to change its id as well.</p>
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Stable id, used in the config, in cache and prebuilt index file names, and in their headers.
+     */
+    String id();
+
+    /**
+     * Short description for logs and the benchmark, e.g. the model name and size.
+     */
+    String description();
+
+    /**
+     * @return whether the model can run here, e.g. its native libraries or model files are present
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Creates a new model instance. Called on first use and again after every idle unload, once per inference lane,
+     * see {@link EmbeddingModelManager}, so it should not keep the instance around itself.
+     *
+     * @param workers        executor for parallel inference of a batch
+     * @param intraOpThreads threads a single inference may use, 0 for the runtime default. Providers without such
+     *                       a setting ignore it.
+     */
+    EmbeddingModel create(Executor workers, int intraOpThreads);
+
+}
@@ -0,0 +1,109 @@
+package rearth.oracle.search;
+
+import rearth.oracle.Oracle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Registry of the available {@link EmbeddingProvider}s. Other mods can add their own with {@link #register}, before
+ * the search is first opened.
+ */
+public final class EmbeddingProviders {
+
+    public static final String DEFAULT_ID = OnnxEmbeddingProvider.BUNDLED_ID;
+
+    private static final Map<String, EmbeddingProvider> PROVIDERS = new LinkedHashMap<>();
+    // where custom models are installed, named in the warning when no model can run
+    private static Path customModelsDir = Path.of("config", Oracle.MOD_ID, "models");
+
+    private EmbeddingProviders() {
+    }
+
+    /**
+     * Adds a provider, replacing any previous one with the same id.
+     */
+    public static synchronized void register(EmbeddingProvider provider) {
+        PROVIDERS.put(provider.id(), provider);
+    }
+
+    public static synchronized Optional<EmbeddingProvider> get(String id) {
+        return Optional.ofNullable(PROVIDERS.get(id));
+    }
+
+    public static synchronized List<EmbeddingProvider> all() {
+        return List.copyOf(PROVIDERS.values());
+    }
+
+    /**
+     * Registers the bundled models, and every model found in a sub folder of {@code customModelsDir}: static models
+     * (a {@code model.safetensors}) and ONNX models. Providers registered before keep their place, so this can be
+     * called more than once.
+     *
+     * @param extractDir      where the bundled model files are extracted to
+     * @param customModelsDir folder with one sub folder per custom model, may not exist
+     */
+    public static synchronized void registerDefaults(Path extractDir, Path customModelsDir) {
+        PROVIDERS.putIfAbsent(DEFAULT_ID, OnnxEmbeddingProvider.bundled(extractDir));
+        PROVIDERS.putIfAbsent(StaticEmbeddingProvider.BUNDLED_ID, StaticEmbeddingProvider.bundled(extractDir));
+        EmbeddingProviders.customModelsDir = customModelsDir;
+
+        if (!Files.isDirectory(customModelsDir)) return;
+        var found = new ArrayList<Path>();
+        try (var folders = Files.list(customModelsDir)) {
+            folders.filter(Files::isDirectory).sorted().forEach(found::add);
+        } catch (IOException e) {
+            Oracle.LOGGER.warn("Unable to list custom embedding models in {}: {}", customModelsDir, e.getMessage());
+        }
+        for (var folder : found) PROVIDERS.putIfAbsent(folder.getFileName().toString(), fromDirectory(folder));
+    }
+
+    private static EmbeddingProvider fromDirectory(Path folder) {
+        if (StaticEmbeddingProvider.isModelDirectory(folder)) return StaticEmbeddingProvider.fromDirectory(folder);
+        return OnnxEmbeddingProvider.fromDirectory(folder);
+    }
+
+    /**
+     * Lookup for the build tools, which run outside the game: a registered id, or the folder of a custom model.
+     *
+     * @throws IllegalArgumentException if it is neither
+     */
+    public static synchronized EmbeddingProvider forTool(String idOrFolder) {
+        var registered = PROVIDERS.get(idOrFolder);
+        if (registered != null) return registered;
+        var folder = Path.of(idOrFolder);
+        if (Files.isDirectory(folder)) return fromDirectory(folder);
+        throw new IllegalArgumentException("Unknown embedding model: " + idOrFolder);
+    }
+
+    /**
+     * @return the provider with the given id. If it doesn't exist or can't run here, the default one, and if that
+     * can't run either (e.g. no ONNX natives for this platform), the first registered provider that can. If none can,
+     * the default one is returned anyway, check {@link EmbeddingProvider#isAvailable()} before relying on it.
+     */
+    public static synchronized EmbeddingProvider select(String id) {
+        var selected = PROVIDERS.get(id);
+        if (selected != null && selected.isAvailable()) return selected;
+
+        var fallback = PROVIDERS.get(DEFAULT_ID);
+        if (fallback == null) throw new IllegalStateException("Default embedding provider is not registered");
+        if (!fallback.isAvailable()) {
+            fallback = PROVIDERS.values().stream().filter(EmbeddingProvider::isAvailable).findFirst().orElse(fallback);
+        }
+        if (!fallback.isAvailable()) {
+            Oracle.LOGGER.warn("No embedding model can run on this system, the search only finds exact words. To search with full sentences, "
+                                 + "put a static model ({} and {}) into a sub folder of {} and set embeddingModel in the config to the folder name",
+              StaticEmbeddingProvider.MODEL_FILE, StaticEmbeddingProvider.TOKENIZER_FILE, customModelsDir.toAbsolutePath());
+        } else if (fallback != selected) {
+            Oracle.LOGGER.warn("Embedding model '{}' is {}, using {} instead", id, selected == null ? "unknown" : "not available", fallback.id());
+        }
+        return fallback;
+    }
+
+}
@@ -0,0 +1,93 @@
+package rearth.oracle.search;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filter on exact metadata values, e.g. "wiki is oritech and page is not one of the locked ones".
+ *
+ * <p>{@link OffHeapEmbeddingStore} keeps a row bitmap per value of its facet keys, so for those keys this filter is
+ * resolved with a few bitmap operations before the scan, instead of testing every row. Everywhere else it works
+ * like any other langchain4j {@link Filter} on segment metadata.</p>
+ *
+ * <p>Immutable, the builder methods return new instances.</p>
+ */
+public class FacetFilter implements Filter {
+
+    private static final FacetFilter NONE = new FacetFilter(Map.of(), Map.of());
+
+    // key -> accepted values, a row needs one of them for every key
+    private final Map<String, Set<String>> required;
+    // key -> rejected values
+    private final Map<String, Set<String>> excluded;
+
+    private FacetFilter(Map<String, Set<String>> required, Map<String, Set<String>> excluded) {
+        this.required = required;
+        this.excluded = excluded;
+    }
+
+    public static FacetFilter none() {
+        return NONE;
+    }
+
+    /**
+     * @return a filter that additionally only accepts rows whose {@code key} is one of {@code values}
+     */
+    public FacetFilter require(String key, Collection<String> values) {
+        var copy = new HashMap<>(required);
+        copy.put(key, Set.copyOf(values));
+        return new FacetFilter(Map.copyOf(copy), excluded);
+    }
+
+    /**
+     * @return a filter that additionally rejects rows whose {@code key} is one of {@code values}
+     */
+    public FacetFilter exclude(String key, Collection<String> values) {
+        if (values.isEmpty()) return this;
+        var copy = new HashMap<>(excluded);
+        copy.put(key, Set.copyOf(values));
+        return new FacetFilter(required, Map.copyOf(copy));
+    }
+
+    public Map<String, Set<String>> required() {
+        return required;
+    }
+
+    public Map<String, Set<String>> excluded() {
+        return excluded;
+    }
+
+    public boolean isEmpty() {
+        return required.isEmpty() && excluded.isEmpty();
+    }
+
+    @Override
+    public boolean test(Object object) {
+        if (!(object instanceof Metadata metadata)) return false;
+
+        for (var entry : required.entrySet()) {
+            var value = valueOf(metadata, entry.getKey());
+            if (value == null || !entry.getValue().contains(value)) return false;
+        }
+        for (var entry : excluded.entrySet()) {
+            var value = valueOf(metadata, entry.getKey());
+            if (value != null && entry.getValue().contains(value)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Facet values are always strings. Read directly, since {@link Metadata#toMap()} would copy the map for every row.
+     */
+    @Nullable
+    static String valueOf(Metadata metadata, String key) {
+        return metadata.getString(key);
+    }
+
+}
@@ -0,0 +1,297 @@
+package rearth.oracle.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Hierarchical navigable small world graph over integer row ids, used for approximate
+ * nearest neighbour search. Vectors are never stored here, all scoring goes through the
+ * {@link RowSimilarity} of the owning store, where higher scores mean closer rows.
+ *
+ * <p>Links are kept as one {@code int[]} per node and layer, with the link count in the first slot, and
+ * a parallel {@code float[]} with the similarity of each link, so full link lists can be pruned without re-scoring.
+ * Removed rows stay in the graph as routing nodes and are skipped via the accept predicate during
+ * search; the owner is expected to rebuild the graph after too many removals.</p>
+ *
+ * <p>Not thread safe for writes. Concurrent searches are fine as long as no insert runs at the same time.</p>
+ */
+public class HnswIndex {
+
+    private final RowSimilarity similarity;
+    private final int m;
+    private final int maxLinksBase;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+
+    private int[][][] links = new int[0][][];   // [node][layer] -> {count, link0, link1, ...}
+    private float[][][] linkScores = new float[0][][];  // [node][layer] -> {unused, score0, score1, ...}
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int nodeCount = 0;
+
+    public HnswIndex(Parameters parameters, RowSimilarity similarity) {
+        this.similarity = similarity;
+        this.m = Math.max(2, parameters.m());
+        this.maxLinksBase = this.m * 2;
+        this.efConstruction = Math.max(this.m, parameters.efConstruction());
+        this.levelMultiplier = 1 / Math.log(this.m);
+        this.random = new SplittableRandom(0x0AC1E);
+    }
+
+    private HnswIndex(HnswIndex source, RowSimilarity similarity) {
+        this.similarity = similarity;
+        this.m = source.m;
+        this.maxLinksBase = source.maxLinksBase;
+        this.efConstruction = source.efConstruction;
+        this.levelMultiplier = source.levelMultiplier;
+        this.random = source.random.split();
+
+        this.links = new int[source.links.length][][];
+        this.linkScores = new float[source.linkScores.length][][];
+        for (int node = 0; node < links.length; node++) {
+            if (source.links[node] == null) continue;
+            links[node] = new int[source.links[node].length][];
+            linkScores[node] = new float[source.linkScores[node].length][];
+            for (int layer = 0; layer < links[node].length; layer++) {
+                links[node][layer] = source.links[node][layer].clone();
+                linkScores[node][layer] = source.linkScores[node][layer].clone();
+            }
+        }
+        this.entryPoint = source.entryPoint;
+        this.maxLevel = source.maxLevel;
+        this.nodeCount = source.nodeCount;
+    }
+
+    /**
+     * Independent copy of this graph that scores rows through the given similarity. Rows can be inserted into the copy
+     * while this graph keeps answering searches.
+     */
+    public HnswIndex copy(RowSimilarity similarity) {
+        return new HnswIndex(this, similarity);
+    }
+
+    public int size() {
+        return nodeCount;
+    }
+
+    /**
+     * Adds a row to the graph. Inserting a row id again (e.g. a recycled row) replaces its outgoing links.
+     */
+    public void insert(int node) {
+        if (node >= links.length) {
+            links = Arrays.copyOf(links, Math.max(node + 1, links.length * 2));
+            linkScores = Arrays.copyOf(linkScores, links.length);
+        }
+
+        var level = randomLevel();
+        var nodeLinks = new int[level + 1][];
+        var nodeScores = new float[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            nodeLinks[layer] = new int[1 + maxLinks(layer)];
+            nodeScores[layer] = new float[1 + maxLinks(layer)];
+        }
+        var previous = links[node];
+        if (previous == null) nodeCount++;
+        links[node] = nodeLinks;
+        linkScores[node] = nodeScores;
+
+        if (previous != null && entryPoint == node) {
+            // the entry point is re-inserted, route through one of its former neighbours instead
+            entryPoint = -1;
+            for (int layer = previous.length - 1; layer >= 0 && entryPoint == -1; layer--) {
+                if (previous[layer][0] > 0) entryPoint = previous[layer][1];
+            }
+            maxLevel = entryPoint == -1 ? -1 : links[entryPoint].length - 1;
+        }
+
+        if (entryPoint == -1) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        // a re-inserted node is still reachable through old links, it must never be its own neighbour
+        IntToDoubleFunction scorer = row -> row == node ? Double.NEGATIVE_INFINITY : similarity.between(node, row);
+        var current = new Neighbor(entryPoint, scorer.applyAsDouble(entryPoint));
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedyClosest(scorer, current, layer);
+        }
+
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            var candidates = searchLayer(scorer, current, efConstruction, layer, row -> row != node);
+            var selected = candidates.subList(0, Math.min(m, candidates.size()));
+
+            var own = nodeLinks[layer];
+            own[0] = 0;
+            for (var neighbor : selected) {
+                own[++own[0]] = neighbor.node();
+                nodeScores[layer][own[0]] = (float) neighbor.score();
+                connect(neighbor.node(), node, neighbor.score(), layer);
+            }
+
+            if (!candidates.isEmpty()) current = candidates.getFirst();
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Finds the approximately closest accepted rows to a query.
+     *
+     * @param scorer similarity between the query and a row
+     * @param k      number of results
+     * @param ef     candidate list size, values above {@code k} trade speed for recall
+     * @param accept rows that may be returned; all rows are still used for routing
+     * @return up to {@code k} rows, best first
+     */
+    public List<Neighbor> search(IntToDoubleFunction scorer, int k, int ef, IntPredicate accept) {
+        if (entryPoint == -1 || k <= 0) return List.of();
+
+        var current = new Neighbor(entryPoint, scorer.applyAsDouble(entryPoint));
+        for (int layer = maxLevel; layer > 0; layer--) {
+            current = greedyClosest(scorer, current, layer);
+        }
+
+        var results = searchLayer(scorer, current, Math.max(ef, k), 0, accept);
+        return results.size() > k ? results.subList(0, k) : results;
+    }
+
+    private Neighbor greedyClosest(IntToDoubleFunction scorer, Neighbor start, int layer) {
+        var best = start;
+        var changed = true;
+        while (changed) {
+            changed = false;
+            var layerLinks = linksOf(best.node(), layer);
+            if (layerLinks == null) break;
+            for (int i = 1; i <= layerLinks[0]; i++) {
+                var candidate = layerLinks[i];
+                var score = scorer.applyAsDouble(candidate);
+                if (score > best.score()) {
+                    best = new Neighbor(candidate, score);
+                    changed = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Best-first search on one layer. Returns up to {@code ef} accepted rows sorted best first.
+     */
+    private List<Neighbor> searchLayer(IntToDoubleFunction scorer, Neighbor entry, int ef, int layer, IntPredicate accept) {
+        var visited = new BitSet(links.length);
+        var candidates = new PriorityQueue<Neighbor>(Comparator.comparingDouble(Neighbor::score).reversed());
+        var results = new PriorityQueue<Neighbor>(Comparator.comparingDouble(Neighbor::score));
+
+        visited.set(entry.node());
+        candidates.add(entry);
+        if (accept.test(entry.node())) results.add(entry);
+
+        while (!candidates.isEmpty()) {
+            var closest = candidates.poll();
+            if (results.size() >= ef && closest.score() < results.peek().score()) break;
+
+            var layerLinks = linksOf(closest.node(), layer);
+            if (layerLinks == null) continue;
+            for (int i = 1; i <= layerLinks[0]; i++) {
+                var next = layerLinks[i];
+                if (visited.get(next)) continue;
+                visited.set(next);
+
+                var score = scorer.applyAsDouble(next);
+                if (results.size() < ef || score > results.peek().score()) {
+                    var neighbor = new Neighbor(next, score);
+                    candidates.add(neighbor);
+                    if (accept.test(next)) {
+                        results.add(neighbor);
+                        if (results.size() > ef) results.poll();
+                    }
+                }
+            }
+        }
+
+        var sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Neighbor::score).reversed());
+        return sorted;
+    }
+
+    /**
+     * Adds a back link from {@code node} to {@code target}, dropping the weakest link if the list is full.
+     */
+    private void connect(int node, int target, double score, int layer) {
+        var layerLinks = linksOf(node, layer);
+        if (layerLinks == null) return;
+
+        var layerScores = linkScores[node][layer];
+        var count = layerLinks[0];
+        for (int i = 1; i <= count; i++) {
+            if (layerLinks[i] == target) {
+                layerScores[i] = (float) score;
+                return;
+            }
+        }
+
+        if (count < layerLinks.length - 1) {
+            layerLinks[count + 1] = target;
+            layerScores[count + 1] = (float) score;
+            layerLinks[0] = count + 1;
+            return;
+        }
+
+        var weakestIndex = -1;
+        var weakestScore = score;
+        for (int i = 1; i <= count; i++) {
+            if (layerScores[i] < weakestScore) {
+                weakestScore = layerScores[i];
+                weakestIndex = i;
+            }
+        }
+        if (weakestIndex != -1) {
+            layerLinks[weakestIndex] = target;
+            layerScores[weakestIndex] = (float) score;
+        }
+    }
+
+    private int[] linksOf(int node, int layer) {
+        if (node >= links.length) return null;
+        var nodeLinks = links[node];
+        if (nodeLinks == null || layer >= nodeLinks.length) return null;
+        return nodeLinks[layer];
+    }
+
+    private int maxLinks(int layer) {
+        return layer == 0 ? maxLinksBase : m;
+    }
+
+    private int randomLevel() {
+        return (int) Math.floor(-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    @FunctionalInterface
+    public interface RowSimilarity {
+        double between(int rowA, int rowB);
+    }
+
+    /**
+     * @param m              links per node and layer (twice as many on the base layer)
+     * @param efConstruction candidate list size used while inserting
+     * @param efSearch       default candidate list size used while searching
+     */
+    public record Parameters(int m, int efConstruction, int efSearch) {
+    }
+
+    public record Neighbor(int node, double score) {
+    }
+
+}
@@ -0,0 +1,141 @@
+package rearth.oracle.search;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One run of the search indexer, from reading the pages to the updated index. Every job gets a generation number,
+ * higher than the one of every job started before it, so the index can tell which run produced its current state.
+ *
+ * <p>Cancellation is cooperative: {@link #cancel()} only sets a flag, and the indexer stops at its next
+ * {@link #checkCancelled()}. Those checks are placed so a cancelled job never leaves a half-applied update behind.</p>
+ *
+ * <p>The counters are updated by the indexing threads and can be read from any thread, e.g. to render progress.</p>
+ */
+public class IndexingJob {
+
+    private final long generation;
+    private final long createdAt = System.nanoTime();
+    private final CompletableFuture<IndexingJob> completion = new CompletableFuture<>();
+    private final AtomicInteger pagesDone = new AtomicInteger();
+    private final AtomicInteger pagesTotal = new AtomicInteger();
+    private final AtomicInteger chunksDone = new AtomicInteger();
+    private final AtomicInteger chunksTotal = new AtomicInteger();
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelRequested = false;
+    private volatile long searchableAt = 0;
+
+    public IndexingJob(long generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * Job for indexing runs without anyone observing them, e.g. the prebuilt index generator.
+     */
+    public static IndexingJob untracked() {
+        return new IndexingJob(0);
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Completes with this job once it finished, or exceptionally if it failed or was cancelled.
+     */
+    public CompletableFuture<IndexingJob> completion() {
+        return completion;
+    }
+
+    /**
+     * Asks the job to stop. A job that hasn't started yet is skipped entirely.
+     */
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelRequested;
+    }
+
+    /**
+     * @throws CancellationException if the job was cancelled, unwinding the indexer
+     */
+    public void checkCancelled() {
+        if (cancelRequested) throw new CancellationException("Indexing job " + generation + " was cancelled");
+    }
+
+    public void setState(State state) {
+        if (!this.state.isDone()) this.state = state;
+    }
+
+    public void addPages(int count) {
+        pagesTotal.addAndGet(count);
+    }
+
+    public void pageDone() {
+        pagesDone.incrementAndGet();
+    }
+
+    public void addChunks(int count) {
+        chunksTotal.addAndGet(count);
+    }
+
+    /**
+     * @param count chunks that got their embedding, either from the model or from a cache
+     */
+    public void chunksDone(int count) {
+        chunksDone.addAndGet(count);
+    }
+
+    /**
+     * Marks the moment the first chunks embedded by this job answered queries. Later calls are ignored.
+     */
+    public void markSearchable() {
+        if (searchableAt == 0) searchableAt = System.nanoTime();
+    }
+
+    /**
+     * @return milliseconds from the reload that started this job until its first chunks were searchable, -1 if that didn't happen yet
+     */
+    public long searchableAfterMillis() {
+        var at = searchableAt;
+        return at == 0 ? -1 : (at - createdAt) / 1_000_000;
+    }
+
+    public Progress progress() {
+        return new Progress(state, pagesDone.get(), pagesTotal.get(), chunksDone.get(), chunksTotal.get());
+    }
+
+    public void finish() {
+        state = State.FINISHED;
+        completion.complete(this);
+    }
+
+    public void fail(Throwable error) {
+        state = State.FAILED;
+        completion.completeExceptionally(error);
+    }
+
+    public void markCancelled() {
+        state = State.CANCELLED;
+        completion.cancel(false);
+    }
+
+    public enum State {
+        QUEUED, READING, EMBEDDING, FINISHED, CANCELLED, FAILED;
+
+        public boolean isDone() {
+            return this == FINISHED || this == CANCELLED || this == FAILED;
+        }
+    }
+
+    public record Progress(State state, int pagesDone, int pagesTotal, int chunksDone, int chunksTotal) {
+    }
+
+}
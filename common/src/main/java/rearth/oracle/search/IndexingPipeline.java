@@ -0,0 +1,240 @@
+package rearth.oracle.search;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import net.minecraft.resource.Resource;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+import rearth.oracle.Oracle;
+import rearth.oracle.util.MarkdownParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+
+import static rearth.oracle.OracleClient.ROOT_DIR;
+
+/**
+ * Turns wiki resources into embedded text segments in three stages:
+ * <ol>
+ *     <li>read + frontmatter parsing, one task per file on the worker pool</li>
+ *     <li>chunking along the markdown structure ({@link MarkdownChunker}), also per file on the worker pool</li>
+ *     <li>embedding of all chunks that are not in the {@link EmbeddingCache}, in length-sorted batches</li>
+ * </ol>
+ * The worker pool is shared with the embedding model, so inference is bounded to the same threads.
+ */
+public class IndexingPipeline {
+
+    private static final int BATCH_SIZE = 64;
+
+    private static ExecutorService workers;
+
+    private final ExecutorService executor;
+    private final EmbeddingCache cache;
+    private final IndexingJob job;
+
+    public IndexingPipeline(ExecutorService executor, EmbeddingCache cache) {
+        this(executor, cache, IndexingJob.untracked());
+    }
+
+    /**
+     * @param job receives the progress of every stage, and is checked for cancellation between work items
+     */
+    public IndexingPipeline(ExecutorService executor, EmbeddingCache cache, IndexingJob job) {
+        this.executor = executor;
+        this.cache = cache;
+        this.job = job;
+    }
+
+    /**
+     * Shared bounded pool for indexing and inference. One core is left free for the render thread,
+     * and idle workers time out so the pool costs nothing while no indexing is running. The workers run
+     * at the lowest priority, so the game threads win whenever the cores are contended.
+     */
+    public static synchronized ExecutorService getWorkers() {
+        if (workers == null) {
+            var size = getWorkerCount();
+            var counter = new AtomicInteger();
+            var pool = new ThreadPoolExecutor(size, size, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+                var thread = new Thread(task, "Oracle Search Worker " + counter.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            workers = pool;
+        }
+        return workers;
+    }
+
+    public static int getWorkerCount() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * Stage 1: reads all accepted resources in parallel and parses their frontmatter and title.
+     */
+    public List<PageSource> readPages(Map<Identifier, Resource> resources, BiPredicate<String, String> filter) {
+        var tasks = new ArrayList<CompletableFuture<PageSource>>();
+
+        for (var entry : resources.entrySet()) {
+            var resourceId = entry.getKey();
+            var purePath = resourceId.getPath().replaceFirst(ROOT_DIR + "/", "");
+            var segments = purePath.split("/");
+            var modId = segments[0];        // e.g. "oritech"
+            var entryPath = purePath.replaceFirst(modId + "/", ""); // e.g. "tools/wrench.mdx"
+            var entryFileName = segments[segments.length - 1]; // e.g. "wrench.mdx"
+            var entryDirectory = entryPath.replace(entryFileName, ""); // e.g. "tools" or "processing/reactor" or ".translated/ja_jp/tools"
+
+            if (!filter.test(modId, purePath)) continue; // e.g. translations of other languages
+
+            tasks.add(CompletableFuture.supplyAsync(() -> {
+                job.checkCancelled();
+                var page = readPage(resourceId, entry.getValue(), modId, entryDirectory, entryFileName);
+                job.pageDone();
+                return page;
+            }, executor));
+        }
+        job.addPages(tasks.size());
+
+        return tasks.stream().map(CompletableFuture::join).toList();
+    }
+
+    private static PageSource readPage(Identifier resourceId, Resource resource, String wikiId, String category, String fileName) {
+        try (var inputStream = resource.getInputStream()) {
+            var fileContent = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            var frontmatter = MarkdownParser.parseFrontmatter(fileContent);
+            var title = MarkdownParser.parseHeadingTitle(fileContent);
+
+            var fileComponents = new HashMap<String, String>();
+            frontmatter.map().forEach((k, v) -> {
+                if (v.size() == 1) fileComponents.put(k, v.getFirst());
+            });
+
+            return new PageSource(resourceId, wikiId, category, fileName, fileComponents, fileContent, title, contentHash(fileContent));
+        } catch (IOException e) {
+            Oracle.LOGGER.error("Unable to load book with id: {}", resourceId);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stage 2: splits all pages into segments in parallel. Each segment carries the page metadata.
+     * The result contains the chunks of every page, in page order.
+     */
+    public List<PageChunks> split(List<PageSource> pages) {
+        job.checkCancelled();
+        var tasks = pages.stream()
+                      .map(page -> CompletableFuture.supplyAsync(() -> split(page), executor))
+                      .toList();
+
+        return tasks.stream().map(CompletableFuture::join).toList();
+    }
+
+    public static PageChunks split(PageSource page) {
+        var pageMetadata = Metadata.from(page.frontmatter());
+        pageMetadata.put("fileName", page.fileName());
+        pageMetadata.put("category", page.category());
+        pageMetadata.put("wiki", page.wikiId());
+        if (page.title() != null) pageMetadata.put("title", page.title());
+
+        var chunks = MarkdownChunker.chunk(page.content());
+        var segments = new ArrayList<TextSegment>(chunks.size());
+        var previews = new ArrayList<SearchPreview>(chunks.size());
+        for (var chunk : chunks) {
+            var metadata = pageMetadata.copy();
+            if (chunk.anchor() != null) metadata.put("anchor", chunk.anchor());
+            if (chunk.heading() != null) metadata.put("heading", chunk.heading());
+            segments.add(TextSegment.from(chunk.text(), metadata));
+            previews.add(chunk.preview());
+        }
+        return new PageChunks(segments, previews);
+    }
+
+    /**
+     * Chunk texts of raw page content, the same texts {@link #split(PageSource)} produces for that page.
+     */
+    public static List<String> chunkTexts(String content) {
+        return MarkdownChunker.chunk(content).stream().map(MarkdownChunker.Chunk::text).toList();
+    }
+
+    /**
+     * Stage 3: returns one embedding per segment, in segment order. Cached vectors are reused,
+     * everything else is embedded in batches. Batches are formed from segments sorted by length,
+     * so the parallel inference tasks inside a batch take roughly the same time and no worker idles
+     * while waiting on a single long chunk. The model is only requested if some segment is not cached,
+     * so it is never loaded when all pages are covered by the cache or a prebuilt index.
+     * A cancelled job stops between batches; the batches embedded until then are kept in the cache.
+     */
+    public List<Embedding> embed(Supplier<EmbeddingModel> modelSupplier, List<TextSegment> segments) {
+        var embeddings = new Embedding[segments.size()];
+        var missing = new ArrayList<Integer>();
+
+        for (int i = 0; i < segments.size(); i++) {
+            var cached = cache.get(cache.key(segments.get(i).text()));
+            if (cached != null) {
+                embeddings[i] = Embedding.from(cached);
+            } else {
+                missing.add(i);
+            }
+        }
+
+        job.addChunks(segments.size());
+        job.chunksDone(segments.size() - missing.size());
+        if (!missing.isEmpty()) job.setState(IndexingJob.State.EMBEDDING);
+
+        missing.sort(Comparator.comparingInt(index -> segments.get(index).text().length()));
+        var model = missing.isEmpty() ? null : modelSupplier.get();
+
+        for (int start = 0; start < missing.size(); start += BATCH_SIZE) {
+            job.checkCancelled();
+            var batch = missing.subList(start, Math.min(missing.size(), start + BATCH_SIZE));
+            var generated = model.embedAll(batch.stream().map(segments::get).toList()).content();
+            for (int i = 0; i < batch.size(); i++) {
+                var index = batch.get(i);
+                embeddings[index] = generated.get(i);
+                cache.put(cache.key(segments.get(index).text()), generated.get(i).vector());
+            }
+            job.chunksDone(batch.size());
+        }
+
+        if (!missing.isEmpty())
+            Oracle.LOGGER.info("Embedded {} new chunks, reused {} cached chunks", missing.size(), segments.size() - missing.size());
+
+        return List.of(embeddings);
+    }
+
+    /**
+     * Hash of the raw page content, used to detect changed pages between reloads.
+     */
+    public static String contentHash(String content) {
+        var key = EmbeddingCache.key("page", content);
+        return Long.toHexString(key.high()) + Long.toHexString(key.low());
+    }
+
+    public record PageSource(Identifier id, String wikiId, String category, String fileName, Map<String, String> frontmatter,
+                             String content, @Nullable String title, String contentHash) {
+    }
+
+    /**
+     * Chunks of one page, with the result list preview of every segment at the same position.
+     */
+    public record PageChunks(List<TextSegment> segments, List<SearchPreview> previews) {
+    }
+
+}
@@ -0,0 +1,201 @@
+package rearth.oracle.search;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Paces background indexing by the frame time of the client, so indexing while playing doesn't show up as stutter.
+ * The indexer runs its inference in short slices (see {@link EmbeddingModelManager}), and before every slice this
+ * decides how long to pause, keeping the share of time spent on slices (the duty cycle) at a level the frame time
+ * tolerates:
+ * <ul>
+ *     <li>The baseline frame time is measured during the pauses, from frames no slice overlapped.</li>
+ *     <li>If the frames overlapping slices take noticeably longer than the baseline, the duty cycle is halved,
+ *     otherwise it grows a bit with every slice, up to running without pauses.</li>
+ *     <li>Without a world, in menus, while the game is paused, or when no frames are rendered at all (e.g. in the
+ *     prebuilt index generator), there is nothing to keep smooth, and slices run back to back.</li>
+ * </ul>
+ * The render thread reports frames through {@link #frameRendered(long, boolean)}, slices are run through
+ * {@link #runSlice(Supplier)}. Both may be called from different threads.
+ */
+public class IndexingScheduler {
+
+    // frames that take longer than this are loading screens or a hidden window, not gameplay
+    private static final long MAX_FRAME_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // without a frame for this long, nothing is being rendered
+    private static final long STALE_FRAME_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MIN_BACKOFF_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    // frame time differences below this are noise at high frame rates
+    private static final long FRAME_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double BASELINE_SMOOTHING = 0.05;
+    private static final double INDEXING_SMOOTHING = 0.25;
+    private static final double DUTY_STEP = 0.05;
+
+    private final boolean enabled;
+    private final double minDutyCycle;
+    private final double frameTolerance;
+
+    private double dutyCycle = 1;
+    private long lastFrameAt;
+    private long lastFrameNanos;
+    private boolean relaxed = true;
+    private double baselineFrameNanos;
+    private double indexingFrameNanos;
+    private int framesSinceDecision;
+    private long lastBackoffAt;
+    private boolean sliceRunning;
+    private long sliceStartedAt;
+    private long lastSliceEndedAt;
+    private long lastSliceNanos;
+
+    private long slices;
+    private long busyNanos;
+    private long pausedNanos;
+    private long backoffs;
+    private long indexingFrames;
+    private long slowFrames;
+
+    /**
+     * @param enabled        false runs all slices back to back
+     * @param minDutyCycle   lowest share of time spent indexing, so indexing always finishes eventually
+     * @param frameTolerance relative frame time increase over the baseline that is still accepted, e.g. 0.2
+     */
+    public IndexingScheduler(boolean enabled, double minDutyCycle, double frameTolerance) {
+        this.enabled = enabled;
+        this.minDutyCycle = Math.clamp(minDutyCycle, 0.01, 1);
+        this.frameTolerance = Math.max(0, frameTolerance);
+    }
+
+    /**
+     * Scheduler that never pauses, e.g. for tools and tests.
+     */
+    public static IndexingScheduler unthrottled() {
+        return new IndexingScheduler(false, 1, 0);
+    }
+
+    /**
+     * Called by the render thread after every frame.
+     *
+     * @param now     {@link System#nanoTime()} at the end of the frame
+     * @param relaxed whether smoothness doesn't matter right now, e.g. no world is loaded or the game is paused
+     */
+    public synchronized void frameRendered(long now, boolean relaxed) {
+        var previous = lastFrameAt;
+        lastFrameAt = now;
+        this.relaxed = relaxed;
+        if (previous == 0 || now - previous > MAX_FRAME_NANOS) return;
+
+        var frame = now - previous;
+        lastFrameNanos = frame;
+        // a slice that is still waiting for its start doesn't disturb the frame
+        var overlappedSlice = (sliceRunning && now > sliceStartedAt) || lastSliceEndedAt > previous;
+        if (!overlappedSlice) {
+            baselineFrameNanos = baselineFrameNanos == 0 ? frame : baselineFrameNanos + BASELINE_SMOOTHING * (frame - baselineFrameNanos);
+        } else if (!relaxed) {
+            indexingFrameNanos = indexingFrameNanos == 0 ? frame : indexingFrameNanos + INDEXING_SMOOTHING * (frame - indexingFrameNanos);
+            framesSinceDecision++;
+            indexingFrames++;
+            if (baselineFrameNanos > 0 && frame > slowFrameNanos()) slowFrames++;
+        }
+    }
+
+    /**
+     * Runs one slice of indexing work, after pausing as long as the current duty cycle asks for.
+     */
+    public <T> T runSlice(Supplier<T> slice) {
+        var pause = beforeSlice(System.nanoTime());
+        if (pause > 0) LockSupport.parkNanos(pause);
+        synchronized (this) {
+            sliceStartedAt = System.nanoTime();
+        }
+        try {
+            return slice.get();
+        } finally {
+            afterSlice(System.nanoTime());
+        }
+    }
+
+    /**
+     * Adjusts the duty cycle to the frames since the last slice, and schedules the next slice after the pause.
+     *
+     * @param now {@link System#nanoTime()}
+     * @return nanoseconds to wait before the slice starts
+     */
+    public synchronized long beforeSlice(long now) {
+        var pause = pauseNanos(now);
+        sliceRunning = true;
+        sliceStartedAt = now + pause;
+        pausedNanos += pause;
+        return pause;
+    }
+
+    /**
+     * @param now {@link System#nanoTime()}, once the slice started by {@link #beforeSlice(long)} is done
+     */
+    public synchronized void afterSlice(long now) {
+        sliceRunning = false;
+        lastSliceEndedAt = now;
+        lastSliceNanos = Math.max(0, now - sliceStartedAt);
+        busyNanos += lastSliceNanos;
+        slices++;
+    }
+
+    private long pauseNanos(long now) {
+        if (!enabled || relaxed || lastFrameAt == 0 || now - lastFrameAt > STALE_FRAME_NANOS) return 0;
+
+        // no undisturbed frame seen yet, leave room for a few
+        if (baselineFrameNanos == 0) return Math.min(MAX_PAUSE_NANOS, 3 * Math.max(lastFrameNanos, TimeUnit.MILLISECONDS.toNanos(16)));
+
+        if (framesSinceDecision > 0) {
+            framesSinceDecision = 0;
+            if (indexingFrameNanos > slowFrameNanos()) {
+                if (now - lastBackoffAt >= MIN_BACKOFF_INTERVAL_NANOS) {
+                    dutyCycle = Math.max(minDutyCycle, dutyCycle / 2);
+                    lastBackoffAt = now;
+                    backoffs++;
+                }
+            } else {
+                dutyCycle = Math.min(1, dutyCycle + DUTY_STEP);
+            }
+        }
+
+        if (dutyCycle >= 1) return 0;
+        return Math.min(MAX_PAUSE_NANOS, (long) (lastSliceNanos * (1 - dutyCycle) / dutyCycle));
+    }
+
+    private double slowFrameNanos() {
+        return baselineFrameNanos * (1 + frameTolerance) + FRAME_SLACK_NANOS;
+    }
+
+    public synchronized double dutyCycle() {
+        return dutyCycle;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(slices, busyNanos / 1_000_000, pausedNanos / 1_000_000, backoffs, indexingFrames, slowFrames,
+          baselineFrameNanos / 1_000_000, indexingFrameNanos / 1_000_000, dutyCycle);
+    }
+
+    /**
+     * Clears the counters of {@link #stats()}, e.g. when a new indexing job starts. The frame time measurements are kept.
+     */
+    public synchronized void resetStats() {
+        slices = 0;
+        busyNanos = 0;
+        pausedNanos = 0;
+        backoffs = 0;
+        indexingFrames = 0;
+        slowFrames = 0;
+    }
+
+    /**
+     * @param indexingFrames frames rendered during gameplay while a slice was running
+     * @param slowFrames     of those, the frames that took noticeably longer than the baseline
+     */
+    public record Stats(long slices, long busyMillis, long pausedMillis, long backoffs, long indexingFrames, long slowFrames,
+                        double baselineFrameMillis, double indexingFrameMillis, double dutyCycle) {
+    }
+
+}
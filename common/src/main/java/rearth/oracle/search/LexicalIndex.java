@@ -0,0 +1,209 @@
+package rearth.oracle.search;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Immutable inverted index with BM25 ranking. Needs no model, so it is available right after the pages were
+ * read and chunked, and keeps search working when embeddings can't be generated at all.
+ *
+ * <p>Each posting list is stored as one {@code byte[]} of varint pairs (document id delta, term frequency),
+ * so even large modpacks only cost a few bytes per term occurrence.</p>
+ *
+ * @param <T> payload returned for matching documents, e.g. the text segment
+ */
+public class LexicalIndex<T> {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Set<String> STOP_WORDS = Set.of(
+      "a", "an", "and", "are", "as", "at", "be", "by", "can", "do", "does", "for", "from", "how", "i", "if", "in", "into", "is", "it",
+      "its", "of", "on", "or", "so", "that", "the", "this", "to", "was", "what", "when", "where", "which", "with", "you", "your");
+
+    private final List<T> payloads;
+    private final int[] documentLengths;
+    private final double averageLength;
+    private final Map<String, byte[]> postings;
+    private final Map<String, Integer> documentFrequencies;
+
+    private LexicalIndex(List<T> payloads, int[] documentLengths, Map<String, byte[]> postings, Map<String, Integer> documentFrequencies) {
+        this.payloads = payloads;
+        this.documentLengths = documentLengths;
+        this.averageLength = Math.max(1, Arrays.stream(documentLengths).average().orElse(1));
+        this.postings = postings;
+        this.documentFrequencies = documentFrequencies;
+    }
+
+    public static <T> LexicalIndex<T> build(List<Document<T>> documents) {
+        var payloads = new ArrayList<T>(documents.size());
+        var lengths = new int[documents.size()];
+        var encoders = new HashMap<String, PostingEncoder>();
+
+        for (int doc = 0; doc < documents.size(); doc++) {
+            var document = documents.get(doc);
+            payloads.add(document.payload());
+
+            var terms = tokenize(document.text());
+            lengths[doc] = terms.size();
+
+            var frequencies = new HashMap<String, Integer>();
+            for (var term : terms) frequencies.merge(term, 1, Integer::sum);
+            for (var entry : frequencies.entrySet()) {
+                encoders.computeIfAbsent(entry.getKey(), key -> new PostingEncoder()).add(doc, entry.getValue());
+            }
+        }
+
+        var postings = new HashMap<String, byte[]>(encoders.size());
+        var frequencies = new HashMap<String, Integer>(encoders.size());
+        encoders.forEach((term, encoder) -> {
+            postings.put(term, encoder.bytes.toByteArray());
+            frequencies.put(term, encoder.count);
+        });
+
+        return new LexicalIndex<>(List.copyOf(payloads), lengths, postings, frequencies);
+    }
+
+    public int size() {
+        return payloads.size();
+    }
+
+    /**
+     * Short queries that name something, like a page title. These are answered better (and much faster) by
+     * exact term matching than by a sentence embedding. Other short queries of known words, e.g. "energy storage",
+     * still go to the embeddings, since the pages may describe them in other words.
+     *
+     * @param names keys of the known names, see {@link #nameKey(String)}
+     */
+    public boolean isKeywordQuery(String query, Set<String> names) {
+        var terms = tokenize(query);
+        return !terms.isEmpty() && terms.size() <= 2 && names.contains(String.join(" ", terms)) && terms.stream().allMatch(postings::containsKey);
+    }
+
+    /**
+     * Key of a name (e.g. a page title) for {@link #isKeywordQuery(String, Set)}, so "Pulverizers" matches "pulverizer".
+     */
+    public static String nameKey(String name) {
+        return String.join(" ", tokenize(name));
+    }
+
+    /**
+     * @return up to {@code maxResults} documents, best first. Scores are relative to the best returned match,
+     * so the first hit always has a score of 1.
+     */
+    public List<Hit<T>> search(String query, int maxResults) {
+        return search(query, maxResults, payload -> true);
+    }
+
+    /**
+     * @param accepted documents that may be returned, rejected ones are skipped before ranking
+     */
+    public List<Hit<T>> search(String query, int maxResults, Predicate<T> accepted) {
+        var terms = new LinkedHashSet<>(tokenize(query));
+        var scores = new float[payloads.size()];
+        var touched = new ArrayList<Integer>();
+
+        for (var term : terms) {
+            var postingList = postings.get(term);
+            if (postingList == null) continue;
+
+            var frequency = documentFrequencies.get(term);
+            var idf = Math.log(1 + (payloads.size() - frequency + 0.5) / (frequency + 0.5));
+
+            var position = new int[1];
+            var doc = 0;
+            while (position[0] < postingList.length) {
+                doc += readVarInt(postingList, position);
+                var termFrequency = readVarInt(postingList, position);
+                var norm = K1 * (1 - B + B * documentLengths[doc] / averageLength);
+                if (scores[doc] == 0) touched.add(doc);
+                scores[doc] += (float) (idf * termFrequency * (K1 + 1) / (termFrequency + norm));
+            }
+        }
+
+        var best = new PriorityQueue<Integer>(Comparator.comparingDouble(doc -> scores[doc]));
+        for (var doc : touched) {
+            if (!accepted.test(payloads.get(doc))) continue;
+            best.add(doc);
+            if (best.size() > maxResults) best.poll();
+        }
+
+        var sorted = new ArrayList<>(best);
+        sorted.sort(Comparator.comparingDouble(doc -> -scores[doc]));
+        if (sorted.isEmpty()) return List.of();
+
+        var topScore = scores[sorted.getFirst()];
+        return sorted.stream().map(doc -> new Hit<>(payloads.get(doc), scores[doc] / topScore)).toList();
+    }
+
+    /**
+     * Lower case letter/digit runs without stop words. A trailing plural "s" is dropped, so "pipes" finds "pipe".
+     */
+    public static List<String> tokenize(String text) {
+        var terms = new ArrayList<String>();
+        var lower = text.toLowerCase(Locale.ROOT);
+        var start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            var letter = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (letter && start == -1) {
+                start = i;
+            } else if (!letter && start != -1) {
+                var term = lower.substring(start, i);
+                start = -1;
+                if (STOP_WORDS.contains(term)) continue;
+                if (term.length() > 3 && term.endsWith("s") && !term.endsWith("ss")) term = term.substring(0, term.length() - 1);
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static int readVarInt(byte[] bytes, int[] position) {
+        var result = 0;
+        var shift = 0;
+        byte current;
+        do {
+            current = bytes[position[0]++];
+            result |= (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return result;
+    }
+
+    private static final class PostingEncoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int lastDoc = 0;
+        private int count = 0;
+
+        void add(int doc, int termFrequency) {
+            writeVarInt(doc - lastDoc);
+            writeVarInt(termFrequency);
+            lastDoc = doc;
+            count++;
+        }
+
+        private void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes.write(value);
+        }
+    }
+
+    public record Document<T>(String text, T payload) {
+    }
+
+    public record Hit<T>(T payload, double score) {
+    }
+
+}
@@ -0,0 +1,42 @@
+package rearth.oracle.search;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small thread safe least-recently-used cache. Lookups refresh an entry, and the oldest entry is evicted
+ * once {@code maxSize} is exceeded.
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> entries;
+
+    public LruCache(int maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Nullable
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+}
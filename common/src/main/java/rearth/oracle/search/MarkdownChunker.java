@@ -0,0 +1,294 @@
+package rearth.oracle.search;
+
+import org.commonmark.ext.front.matter.YamlFrontMatterBlock;
+import org.commonmark.ext.front.matter.YamlFrontMatterExtension;
+import org.commonmark.node.*;
+import org.commonmark.parser.Parser;
+import org.jetbrains.annotations.Nullable;
+import rearth.oracle.util.MdxBlockFactory;
+import rearth.oracle.util.MdxComponentBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits wiki pages into search chunks along their markdown structure, using the same commonmark setup as the
+ * page renderer. Every heading starts a new section, and each section becomes one chunk of plain text: frontmatter,
+ * images and assets are dropped, and MDX components are reduced to what they mean (a crafting recipe becomes
+ * "Crafting recipe: pulverizer"). Sections longer than {@link #MAX_CHUNK_LENGTH} are split between blocks, without overlap.
+ *
+ * <p>Chunks start with their section heading, so every chunk has its context, and carry the heading anchor. Each chunk
+ * also gets a styled {@link SearchPreview} for the result list, made from the same parse.</p>
+ */
+public class MarkdownChunker {
+
+    public static final int MAX_CHUNK_LENGTH = 800;
+
+    private static final String[] REMOVED_TAGS = {"<center>", "</center>", "<div>", "</div>", "<span>", "</span>"};
+
+    // same block setup as the page renderer, so chunks see the page the way players do
+    private static final Set<Class<? extends Block>> ENABLED_BLOCKS = Set.of(
+      Heading.class, HtmlBlock.class, ThematicBreak.class,
+      FencedCodeBlock.class, BlockQuote.class, ListBlock.class
+    );
+
+    private static final Parser PARSER = Parser.builder()
+                                           .enabledBlockTypes(ENABLED_BLOCKS)
+                                           .extensions(List.of(YamlFrontMatterExtension.create()))
+                                           .customBlockParserFactory(new MdxBlockFactory())
+                                           .build();
+
+    public static List<Chunk> chunk(String markdown) {
+        for (var tag : REMOVED_TAGS) markdown = markdown.replace(tag, "");
+
+        var document = PARSER.parse(markdown);
+        var chunks = new ArrayList<Chunk>();
+        String heading = null;
+        var blocks = new ArrayList<SearchPreview>();
+
+        for (var node = document.getFirstChild(); node != null; node = node.getNext()) {
+            if (node instanceof YamlFrontMatterBlock) continue;
+
+            if (node instanceof Heading) {
+                addSection(chunks, heading, blocks);
+                heading = styledText(node).text();
+                blocks.clear();
+                continue;
+            }
+
+            var text = styledText(node);
+            if (!text.isEmpty()) blocks.add(text);
+        }
+        addSection(chunks, heading, blocks);
+
+        return chunks;
+    }
+
+    /**
+     * GitHub style heading anchor: lower case, punctuation removed, spaces replaced by dashes.
+     */
+    public static String anchor(String heading) {
+        var builder = new StringBuilder(heading.length());
+        for (var c : heading.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c) || c == '-' || c == '_') {
+                builder.append(c);
+            } else if (c == ' ') {
+                builder.append('-');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void addSection(List<Chunk> chunks, @Nullable String heading, List<SearchPreview> blocks) {
+        if (blocks.isEmpty()) return;   // headings without own text, e.g. followed directly by a sub heading
+
+        var anchor = heading == null || heading.isEmpty() ? null : anchor(heading);
+        var prefix = heading == null || heading.isEmpty() ? "" : heading + "\n";
+        var current = new ArrayList<SearchPreview>();
+        var length = prefix.length();
+
+        for (var block : blocks) {
+            for (var part : splitLongBlock(block, MAX_CHUNK_LENGTH - prefix.length())) {
+                if (!current.isEmpty() && length + part.text().length() + 1 > MAX_CHUNK_LENGTH) {
+                    chunks.add(toChunk(heading, anchor, prefix, current));
+                    current = new ArrayList<>();
+                    length = prefix.length();
+                }
+                if (!current.isEmpty()) length++;
+                current.add(part);
+                length += part.text().length();
+            }
+        }
+
+        if (!current.isEmpty()) chunks.add(toChunk(heading, anchor, prefix, current));
+    }
+
+    private static Chunk toChunk(@Nullable String heading, @Nullable String anchor, String prefix, List<SearchPreview> parts) {
+        var text = new StringBuilder(prefix);
+        var preview = new SearchPreview.Builder();
+        if (!prefix.isEmpty()) preview.append(heading, SearchPreview.BOLD).append("\n", 0);
+
+        for (int i = 0; i < parts.size(); i++) {
+            if (i > 0) text.append('\n');
+            text.append(parts.get(i).text());
+            if (preview.length() <= SearchPreview.MAX_LENGTH) {
+                if (i > 0) preview.append("\n", 0);
+                preview.append(parts.get(i));
+            }
+        }
+
+        return new Chunk(text.toString().strip(), heading, anchor, preview.build().truncate(SearchPreview.MAX_LENGTH));
+    }
+
+    /**
+     * Splits a single block that doesn't fit into one chunk at sentence ends, or at spaces as a last resort.
+     */
+    private static List<SearchPreview> splitLongBlock(SearchPreview block, int maxLength) {
+        maxLength = Math.max(100, maxLength);
+        var text = block.text();
+        if (text.length() <= maxLength) return List.of(block);
+
+        var parts = new ArrayList<SearchPreview>();
+        var start = 0;
+        while (text.length() - start > maxLength) {
+            var remaining = text.substring(start);
+            var cut = remaining.lastIndexOf(". ", maxLength);
+            if (cut < maxLength / 2) cut = remaining.lastIndexOf(' ', maxLength);
+            if (cut <= 0) cut = maxLength;
+            parts.add(stripped(block, start, start + cut + 1));
+            start += cut + 1;
+            while (start < text.length() && Character.isWhitespace(text.charAt(start))) start++;
+        }
+        if (start < text.length()) parts.add(stripped(block, start, text.length()));
+        return parts;
+    }
+
+    private static SearchPreview stripped(SearchPreview preview, int start, int end) {
+        var text = preview.text();
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        return preview.slice(start, end);
+    }
+
+    private static SearchPreview styledText(Node node) {
+        var visitor = new StyledTextVisitor();
+        node.accept(visitor);
+        visitor.builder.stripTrailing();
+        return visitor.builder.build();
+    }
+
+    /**
+     * Collects the text of a node with its inline styles. Whitespace is normalized while appending: runs of spaces
+     * become one, and spaces around line breaks and at the start are dropped.
+     */
+    private static class StyledTextVisitor extends AbstractVisitor {
+        private final SearchPreview.Builder builder = new SearchPreview.Builder();
+        private int style = 0;
+
+        private void append(String text, int runStyle) {
+            var part = new StringBuilder(text.length());
+            for (var c : text.toCharArray()) {
+                var last = part.isEmpty() ? builder.lastChar() : part.charAt(part.length() - 1);
+                if (c == ' ' || c == '\t') {
+                    if (last != ' ' && last != '\n' && last != 0) part.append(' ');
+                } else if (c == '\n') {
+                    if (last == ' ') {
+                        if (part.isEmpty()) builder.removeLast();
+                        else part.setLength(part.length() - 1);
+                    }
+                    if (!part.isEmpty() || builder.length() > 0) part.append('\n');
+                } else {
+                    part.append(c);
+                }
+            }
+            builder.append(part.toString(), runStyle);
+        }
+
+        private void visitStyled(Node node, int added) {
+            var old = style;
+            style |= added;
+            visitChildren(node);
+            style = old;
+        }
+
+        @Override
+        public void visit(org.commonmark.node.Text text) {
+            append(text.getLiteral(), style);
+        }
+
+        @Override
+        public void visit(Code code) {
+            append(code.getLiteral(), style | SearchPreview.CODE);
+        }
+
+        @Override
+        public void visit(StrongEmphasis emphasis) {
+            visitStyled(emphasis, SearchPreview.BOLD);
+        }
+
+        @Override
+        public void visit(Emphasis emphasis) {
+            visitStyled(emphasis, SearchPreview.ITALIC);
+        }
+
+        @Override
+        public void visit(Link link) {
+            visitStyled(link, SearchPreview.LINK);
+        }
+
+        @Override
+        public void visit(SoftLineBreak lineBreak) {
+            append(" ", style);
+        }
+
+        @Override
+        public void visit(HardLineBreak lineBreak) {
+            append("\n", style);
+        }
+
+        @Override
+        public void visit(Paragraph paragraph) {
+            visitChildren(paragraph);
+            append("\n", style);
+        }
+
+        @Override
+        public void visit(Heading heading) {
+            visitChildren(heading);
+            append("\n", style);
+        }
+
+        @Override
+        public void visit(ListItem item) {
+            append("- ", style);
+            visitChildren(item);
+        }
+
+        @Override
+        public void visit(FencedCodeBlock codeBlock) {
+            append(codeBlock.getLiteral() + "\n", SearchPreview.CODE);
+        }
+
+        @Override
+        public void visit(IndentedCodeBlock codeBlock) {
+            append(codeBlock.getLiteral() + "\n", SearchPreview.CODE);
+        }
+
+        @Override
+        public void visit(HtmlBlock html) {
+            // raw html / jsx, no searchable text
+        }
+
+        @Override
+        public void visit(HtmlInline html) {
+        }
+
+        @Override
+        public void visit(Image image) {
+        }
+
+        @Override
+        public void visit(CustomBlock block) {
+            if (block instanceof MdxComponentBlock.CraftingRecipeBlock recipe && recipe.result != null && !recipe.result.isBlank()) {
+                append("Crafting recipe: " + itemName(recipe.result) + "\n", style);
+            } else if (block instanceof MdxComponentBlock.CalloutBlock) {
+                visitChildren(block);
+            }
+            // assets and frontmatter have no text
+        }
+
+        private static String itemName(String itemId) {
+            var path = itemId.contains(":") ? itemId.substring(itemId.indexOf(':') + 1) : itemId;
+            return path.replace('_', ' ');
+        }
+    }
+
+    /**
+     * @param preview styled start of the chunk for the result list, see {@link SearchPreview}
+     */
+    public record Chunk(String text, @Nullable String heading, @Nullable String anchor, SearchPreview preview) {
+    }
+
+}
@@ -0,0 +1,682 @@
+package rearth.oracle.search;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.jetbrains.annotations.Nullable;
+import rearth.oracle.Oracle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Embedding store that keeps all vectors outside the java heap, as fixed-stride rows of normalized
+ * floats in one contiguous buffer. The buffer is a memory-mapped scratch file when possible (so the OS
+ * can page it out), or a direct buffer otherwise.
+ *
+ * <p>Everything else lives in compact side tables indexed by row: segment ids, texts and an interned
+ * metadata table, so all chunks of a page share a single {@link Metadata} instance. Removed rows are
+ * recycled by later inserts. {@link TextSegment}s are only materialized for the returned matches.</p>
+ *
+ * <p>Once the store holds at least {@code exactSearchThreshold} rows, searches go through an
+ * {@link HnswIndex} instead of a full scan. The graph is maintained by {@link #updateGraph()}, outside of the store
+ * lock, and rebuilt when a quarter of it has been removed. Rows added since the last update are scanned exactly.</p>
+ *
+ * <p>With {@link Settings#quantize()}, every row is kept as int8 values with a per-row scale in a direct buffer,
+ * a quarter of the float size. Building the graph, graph searches and full scans all score those. Only the best
+ * {@code rerankFactor * maxResults} candidates are re-ranked with their float rows, which stay in the mapped file, so
+ * the OS can page out everything except the few rows a search reads. Without re-ranking, the float rows aren't
+ * stored at all.</p>
+ *
+ * <p>For the configured facet keys (e.g. wiki or page), a row bitmap is kept per metadata value. A {@link FacetFilter}
+ * on those keys is resolved into one bitmap of accepted rows before searching, so filtered rows are never scored.
+ * Small selections are scanned exactly, since the graph finds few neighbors when most of it is filtered out.</p>
+ */
+public class OffHeapEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private static final int INITIAL_ROWS = 1024;
+
+    @Nullable
+    private final Path backingFile;
+    @Nullable
+    private FileChannel channel;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Settings settings;
+    private final VectorKernel kernel = VectorKernel.get();
+    // quantized stores only need the float rows for re-ranking
+    private final boolean keepFloats;
+
+    private int dimension = -1;
+    private int capacity = 0;
+    private int rowCount = 0;
+    private FloatBuffer vectors;
+    @Nullable
+    private ByteBuffer quantizedVectors;
+    private float[] scales = new float[0];
+
+    // side tables, indexed by row
+    private String[] ids = new String[0];
+    private String[] texts = new String[0];
+    private int[] metadataRefs = new int[0];
+    private final BitSet liveRows = new BitSet();
+    private final List<Integer> freeRows = new ArrayList<>();
+    private final Map<String, Integer> rowsById = new HashMap<>();
+
+    // interned metadata
+    private final List<Metadata> metadataTable = new ArrayList<>();
+    private final Map<Map<String, Object>, Integer> metadataIndex = new HashMap<>();
+
+    // facet key -> metadata value -> rows with that value
+    private final Map<String, Map<String, BitSet>> facetRows = new HashMap<>();
+
+    @Nullable
+    private HnswIndex graph;
+    // rows written since the last graph update, searches score them exactly
+    private final BitSet pendingRows = new BitSet();
+    private int removedSinceGraphBuild = 0;
+    // only one graph update at a time, it runs without the store lock
+    private final Lock graphUpdateLock = new ReentrantLock();
+    // rows written and removed while a graph update runs, the new graph may have seen their old vectors
+    @Nullable
+    private BitSet changedDuringUpdate;
+    private int removedDuringUpdate = 0;
+    // incremented by removeAll(), graph updates started before are dropped
+    private int generation = 0;
+
+    /**
+     * @param backingFile scratch file for the memory mapping, deleted on close / exit. If null, or the file
+     *                    can't be created, vectors are stored in a direct buffer instead.
+     */
+    public OffHeapEmbeddingStore(@Nullable Path backingFile, Settings settings) {
+        this(backingFile, settings, Set.of());
+    }
+
+    /**
+     * @param facetKeys metadata keys to keep row bitmaps for, see {@link FacetFilter}
+     */
+    public OffHeapEmbeddingStore(@Nullable Path backingFile, Settings settings, Set<String> facetKeys) {
+        this.settings = settings;
+        this.keepFloats = !settings.quantize() || settings.rerankFactor() > 0;
+        facetKeys.forEach(key -> facetRows.put(key, new HashMap<>()));
+
+        Path usedFile = null;
+        if (backingFile != null && keepFloats) {
+            try {
+                Files.createDirectories(backingFile.getParent());
+                channel = FileChannel.open(backingFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                backingFile.toFile().deleteOnExit();
+                usedFile = backingFile;
+            } catch (IOException e) {
+                Oracle.LOGGER.warn("Unable to create vector file {}, using direct memory instead: {}", backingFile, e.getMessage());
+            }
+        }
+        this.backingFile = usedFile;
+    }
+
+    // ---------------------------------------------------------------- add
+
+    @Override
+    public String add(Embedding embedding) {
+        var id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        var id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        var ids = embeddings.stream().map(e -> UUID.randomUUID().toString()).toList();
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        var ids = embeddings.stream().map(e -> UUID.randomUUID().toString()).toList();
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, @Nullable List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size()))
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size");
+        if (embeddings.isEmpty()) return;
+
+        lock.writeLock().lock();
+        try {
+            if (dimension == -1) dimension = embeddings.getFirst().dimension();
+            ensureCapacity(rowCount - freeRows.size() + embeddings.size());
+
+            for (int i = 0; i < embeddings.size(); i++) {
+                var vector = embeddings.get(i).vector();
+                if (vector.length != dimension)
+                    throw new IllegalArgumentException("Expected embedding dimension " + dimension + ", got " + vector.length);
+
+                var existing = rowsById.get(ids.get(i));
+                if (existing != null) removeRow(existing);
+
+                int row = freeRows.isEmpty() ? rowCount++ : freeRows.removeLast();
+                var normalized = normalized(vector);
+                if (keepFloats) vectors.put(row * dimension, normalized);
+                if (quantizedVectors != null) scales[row] = quantize(normalized, row);
+
+                var segment = embedded == null ? null : embedded.get(i);
+                this.ids[row] = ids.get(i);
+                texts[row] = segment == null ? null : segment.text();
+                metadataRefs[row] = segment == null ? -1 : internMetadata(segment.metadata());
+                if (segment != null) updateFacets(row, segment.metadata(), true);
+                liveRows.set(row);
+                rowsById.put(ids.get(i), row);
+                pendingRows.set(row);
+                if (changedDuringUpdate != null) changedDuringUpdate.set(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the rows written since the last call to the search graph. The graph is created once the store is big enough,
+     * and rebuilt from scratch when too many of its nodes are removed rows that only serve as routing points. Otherwise,
+     * the new rows are inserted into a copy of the current graph.
+     *
+     * <p>Building takes a while for large stores, so it runs on a snapshot of the rows without holding the store lock.
+     * Searches keep using the previous graph meanwhile, and the finished one replaces it in a single assignment. Call
+     * this outside of any lock that searches wait for.</p>
+     */
+    public void updateGraph() {
+        graphUpdateLock.lock();
+        try {
+            HnswIndex base;
+            BitSet rows;
+            FloatBuffer source;
+            ByteBuffer quantizedSource;
+            float[] rowScales;
+            int dim;
+            int startGeneration;
+            lock.writeLock().lock();
+            try {
+                var live = liveRows.cardinality();
+                if (live == 0 || live < settings.exactSearchThreshold()) {
+                    graph = null;
+                    return;
+                }
+                var rebuild = graph == null || removedSinceGraphBuild * 4 >= live;
+                if (!rebuild && pendingRows.isEmpty()) return;
+
+                base = rebuild ? null : graph;
+                rows = (BitSet) (rebuild ? liveRows : pendingRows).clone();
+                // the snapshot keeps its rows when the store grows: a new mapping of the same file, or a copied buffer
+                source = vectors == null ? null : vectors.duplicate();
+                quantizedSource = quantizedVectors == null ? null : quantizedVectors.duplicate();
+                rowScales = scales;
+                dim = dimension;
+                startGeneration = generation;
+                changedDuringUpdate = new BitSet();
+                removedDuringUpdate = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            var startedAt = System.nanoTime();
+            var scratchA = new float[dim];
+            var scratchB = new float[dim];
+            HnswIndex.RowSimilarity similarity = (rowA, rowB) -> {
+                source.get(rowA * dim, scratchA);
+                source.get(rowB * dim, scratchB);
+                return kernel.dot(scratchA, scratchB);
+            };
+            if (quantizedSource != null) {
+                // the inserted row is decoded once and then compared like a query, the float rows are never read
+                var decodedRow = new int[]{-1};
+                var bytes = new byte[dim];
+                similarity = (rowA, rowB) -> {
+                    if (decodedRow[0] != rowA) {
+                        quantizedSource.get(rowA * dim, bytes);
+                        for (int i = 0; i < dim; i++) scratchA[i] = bytes[i] * rowScales[rowA];
+                        decodedRow[0] = rowA;
+                    }
+                    quantizedSource.get(rowB * dim, bytes);
+                    return kernel.dotInt8(scratchA, bytes) * rowScales[rowB];
+                };
+            }
+            var updated = base == null ? new HnswIndex(settings.graph(), similarity) : base.copy(similarity);
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                updated.insert(row);
+            }
+
+            lock.writeLock().lock();
+            try {
+                var changed = changedDuringUpdate;
+                changedDuringUpdate = null;
+                if (generation != startGeneration) return;
+
+                graph = updated;
+                if (base == null) {
+                    pendingRows.clear();
+                    removedSinceGraphBuild = removedDuringUpdate;
+                } else {
+                    pendingRows.andNot(rows);
+                }
+                // rows rewritten meanwhile are inserted again by the next update
+                changed.and(liveRows);
+                pendingRows.or(changed);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            if (base == null) {
+                Oracle.LOGGER.info("Built search graph over {} chunks in {} ms", rows.cardinality(), (System.nanoTime() - startedAt) / 1_000_000);
+            }
+        } finally {
+            graphUpdateLock.unlock();
+        }
+    }
+
+    private void updateFacets(int row, Metadata metadata, boolean set) {
+        for (var facet : facetRows.entrySet()) {
+            var value = FacetFilter.valueOf(metadata, facet.getKey());
+            if (value == null) continue;
+            if (set) {
+                facet.getValue().computeIfAbsent(value, key -> new BitSet()).set(row);
+            } else {
+                var rows = facet.getValue().get(value);
+                if (rows != null) rows.clear(row);
+            }
+        }
+    }
+
+    private int internMetadata(Metadata metadata) {
+        var key = new HashMap<>(metadata.toMap());
+        key.remove("index");    // per-chunk index added by langchain4j splitters, not needed and prevents sharing
+        return metadataIndex.computeIfAbsent(key, map -> {
+            metadataTable.add(Metadata.from(map));
+            return metadataTable.size() - 1;
+        });
+    }
+
+    private void ensureCapacity(int requiredRows) {
+        if (requiredRows <= capacity) return;
+
+        var newCapacity = Math.max(INITIAL_ROWS, capacity);
+        while (newCapacity < requiredRows) newCapacity *= 2;
+
+        var bytes = (long) newCapacity * dimension * (keepFloats ? Float.BYTES : 1);
+        if (bytes > Integer.MAX_VALUE) throw new IllegalStateException("Vector store exceeds 2GB");
+
+        if (keepFloats) {
+            ByteBuffer buffer = null;
+            if (channel != null) {
+                try {
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                } catch (IOException e) {
+                    Oracle.LOGGER.warn("Unable to map vector file {}, using direct memory instead: {}", backingFile, e.getMessage());
+                    closeChannel();
+                }
+            }
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect((int) bytes);
+                if (vectors != null) {
+                    var old = vectors.duplicate().clear().limit(rowCount * dimension);
+                    buffer.order(ByteOrder.nativeOrder()).asFloatBuffer().put(old);
+                }
+            }
+            // a file mapping already contains all previously written rows, since they live in the same file
+
+            vectors = buffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+
+        if (settings.quantize()) {
+            var quantized = ByteBuffer.allocateDirect(newCapacity * dimension);
+            if (quantizedVectors != null) quantized.put(quantizedVectors.duplicate().clear().limit(rowCount * dimension));
+            quantizedVectors = quantized;
+            scales = Arrays.copyOf(scales, newCapacity);
+        }
+
+        ids = Arrays.copyOf(ids, newCapacity);
+        texts = Arrays.copyOf(texts, newCapacity);
+        metadataRefs = Arrays.copyOf(metadataRefs, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private static float[] normalized(float[] vector) {
+        double sum = 0;
+        for (var v : vector) sum += v * v;
+        var norm = (float) Math.sqrt(sum);
+        if (norm == 0 || Math.abs(norm - 1f) < 1e-6) return vector;
+        var result = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) result[i] = vector[i] / norm;
+        return result;
+    }
+
+    /**
+     * Writes the int8 version of a normalized row and returns its scale.
+     */
+    private float quantize(float[] normalized, int row) {
+        var maxAbs = 0f;
+        for (var v : normalized) maxAbs = Math.max(maxAbs, Math.abs(v));
+        var scale = maxAbs == 0 ? 1f : maxAbs / 127f;
+
+        var base = row * dimension;
+        for (int i = 0; i < dimension; i++) {
+            quantizedVectors.put(base + i, (byte) Math.round(normalized[i] / scale));
+        }
+        return scale;
+    }
+
+    // ---------------------------------------------------------------- remove
+
+    @Override
+    public void remove(String id) {
+        removeAll(List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (var id : ids) {
+                var row = rowsById.get(id);
+                if (row != null) removeRow(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            for (int row = liveRows.nextSetBit(0); row >= 0; row = liveRows.nextSetBit(row + 1)) {
+                if (metadataRefs[row] >= 0 && filter.test(metadataTable.get(metadataRefs[row])))
+                    removeRow(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            liveRows.clear();
+            freeRows.clear();
+            rowsById.clear();
+            Arrays.fill(ids, null);
+            Arrays.fill(texts, null);
+            metadataTable.clear();
+            metadataIndex.clear();
+            facetRows.values().forEach(Map::clear);
+            rowCount = 0;
+            graph = null;
+            pendingRows.clear();
+            removedSinceGraphBuild = 0;
+            generation++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeRow(int row) {
+        if (metadataRefs[row] >= 0) updateFacets(row, metadataTable.get(metadataRefs[row]), false);
+        rowsById.remove(ids[row]);
+        ids[row] = null;
+        texts[row] = null;
+        metadataRefs[row] = -1;
+        liveRows.clear(row);
+        freeRows.add(row);
+        pendingRows.clear(row);
+        removedSinceGraphBuild++;
+        if (changedDuringUpdate != null) {
+            changedDuringUpdate.set(row);
+            removedDuringUpdate++;
+        }
+    }
+
+    // ---------------------------------------------------------------- search
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return search(request, null);
+    }
+
+    /**
+     * Like {@link #search(EmbeddingSearchRequest)}, but only scores the rows of the given segment ids, e.g. candidates
+     * picked by a keyword index. The candidates are always scanned exactly, ids that are not in the store are ignored.
+     *
+     * @param candidateIds ids to score, or null to consider every row
+     */
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, @Nullable Collection<String> candidateIds) {
+        lock.readLock().lock();
+        try {
+            if (dimension == -1 || liveRows.isEmpty()) return new EmbeddingSearchResult<>(List.of());
+
+            var query = normalized(request.queryEmbedding().vector());
+            var filter = request.filter();
+            var maxResults = request.maxResults();
+            // relevance score is (cos + 1) / 2, convert the threshold once instead of per row
+            var minCosine = request.minScore() * 2 - 1;
+
+            // facet filters become a bitmap of candidate rows, anything else is tested per row
+            var rows = liveRows;
+            if (filter instanceof FacetFilter facets && facetRows.keySet().containsAll(facets.required().keySet())
+                  && facetRows.keySet().containsAll(facets.excluded().keySet())) {
+                rows = selectRows(facets);
+                filter = null;
+            }
+            if (candidateIds != null) {
+                var selected = new BitSet();
+                for (var id : candidateIds) {
+                    var row = rowsById.get(id);
+                    if (row != null) selected.set(row);
+                }
+                selected.and(rows);
+                rows = selected;
+            }
+            if (rows.isEmpty()) return new EmbeddingSearchResult<>(List.of());
+            var candidateRows = rows;
+            var rowFilter = filter;
+            IntPredicate accepted = row -> candidateRows.get(row) && (rowFilter == null || (metadataRefs[row] >= 0 && rowFilter.test(metadataTable.get(metadataRefs[row]))));
+
+            // scratch rows are per search, so concurrent searches don't share them
+            var floatRow = new float[dimension];
+            IntToDoubleFunction exactScorer = row -> dotRow(query, row, floatRow);
+            // quantized rows find a larger candidate list, only those read their float rows for re-ranking
+            var scorer = exactScorer;
+            var rerank = quantizedVectors != null && settings.rerankFactor() > 0;
+            var candidates = rerank ? maxResults * settings.rerankFactor() : maxResults;
+            if (quantizedVectors != null) {
+                var byteRow = new byte[dimension];
+                scorer = row -> dotQuantizedRow(query, row, byteRow);
+            }
+
+            List<HnswIndex.Neighbor> best;
+            if (graph != null && candidateIds == null && (rows == liveRows || rows.cardinality() >= settings.exactSearchThreshold())) {
+                var pending = (BitSet) pendingRows.clone();
+                pending.and(rows);
+                IntPredicate inGraph = row -> !pendingRows.get(row) && accepted.test(row);
+                best = graph.search(scorer, candidates, Math.max(candidates, settings.graph().efSearch()), pending.isEmpty() ? accepted : inGraph);
+                if (!pending.isEmpty()) {
+                    // rows added since the last graph update aren't linked yet
+                    var merged = new ArrayList<>(best);
+                    merged.addAll(exactSearch(scorer, candidates, pending, accepted));
+                    merged.sort(Comparator.comparingDouble(HnswIndex.Neighbor::score).reversed());
+                    best = merged.size() > candidates ? merged.subList(0, candidates) : merged;
+                }
+            } else {
+                best = exactSearch(scorer, candidates, rows, accepted);
+            }
+
+            if (rerank) {
+                best = best.stream()
+                         .map(hit -> new HnswIndex.Neighbor(hit.node(), exactScorer.applyAsDouble(hit.node())))
+                         .sorted(Comparator.comparingDouble(HnswIndex.Neighbor::score).reversed())
+                         .limit(maxResults)
+                         .toList();
+            }
+
+            var matches = new ArrayList<EmbeddingMatch<TextSegment>>(best.size());
+            for (var hit : best) {
+                if (hit.score() < minCosine) break;
+                matches.add(new EmbeddingMatch<>(RelevanceScore.fromCosineSimilarity(hit.score()), ids[hit.node()], null, segmentAt(hit.node())));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rows passing the filter: for every required key the union of its value bitmaps, intersected,
+     * minus the bitmaps of all excluded values.
+     */
+    private BitSet selectRows(FacetFilter filter) {
+        var rows = (BitSet) liveRows.clone();
+        for (var entry : filter.required().entrySet()) {
+            var values = facetRows.get(entry.getKey());
+            var matching = new BitSet();
+            for (var value : entry.getValue()) {
+                var valueRows = values.get(value);
+                if (valueRows != null) matching.or(valueRows);
+            }
+            rows.and(matching);
+        }
+        for (var entry : filter.excluded().entrySet()) {
+            var values = facetRows.get(entry.getKey());
+            for (var value : entry.getValue()) {
+                var valueRows = values.get(value);
+                if (valueRows != null) rows.andNot(valueRows);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Scores every accepted row of {@code rows}, returns the best {@code maxResults} rows best first.
+     */
+    private List<HnswIndex.Neighbor> exactSearch(IntToDoubleFunction scorer, int maxResults, BitSet rows, IntPredicate accepted) {
+        // min-heap of the best rows so far
+        var best = new PriorityQueue<HnswIndex.Neighbor>(maxResults + 1, Comparator.comparingDouble(HnswIndex.Neighbor::score));
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (!accepted.test(row)) continue;
+
+            var score = scorer.applyAsDouble(row);
+            if (best.size() < maxResults) {
+                best.add(new HnswIndex.Neighbor(row, score));
+            } else if (score > best.peek().score()) {
+                best.poll();
+                best.add(new HnswIndex.Neighbor(row, score));
+            }
+        }
+
+        var result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(HnswIndex.Neighbor::score).reversed());
+        return result;
+    }
+
+    @Nullable
+    private TextSegment segmentAt(int row) {
+        if (texts[row] == null) return null;
+        return TextSegment.from(texts[row], metadataRefs[row] < 0 ? new Metadata() : metadataTable.get(metadataRefs[row]).copy());
+    }
+
+    private double dotRow(float[] query, int row, float[] scratch) {
+        vectors.get(row * dimension, scratch);
+        return kernel.dot(query, scratch);
+    }
+
+    private double dotQuantizedRow(float[] query, int row, byte[] scratch) {
+        quantizedVectors.get(row * dimension, scratch);
+        return kernel.dotInt8(query, scratch) * scales[row];
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveRows.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            removeAll();
+            vectors = null;
+            quantizedVectors = null;
+            capacity = 0;
+            closeChannel();
+            if (backingFile != null) Files.deleteIfExists(backingFile);
+        } catch (IOException e) {
+            Oracle.LOGGER.warn("Unable to delete vector file {}: {}", backingFile, e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param graph                HNSW settings used once the store is large enough
+     * @param exactSearchThreshold row count below which searches scan all rows exactly
+     * @param quantize             keep all rows as int8 values in memory and score those. The float rows are only
+     *                             kept for re-ranking, in the mapped file, or in direct memory if it can't be created
+     * @param rerankFactor         with quantization, re-rank this many times {@code maxResults} candidates
+     *                             with the float rows. 0 disables re-ranking, and the float rows aren't stored.
+     */
+    public record Settings(HnswIndex.Parameters graph, int exactSearchThreshold, boolean quantize, int rerankFactor) {
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+}
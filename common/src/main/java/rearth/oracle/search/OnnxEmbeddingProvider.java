@@ -0,0 +1,196 @@
+package rearth.oracle.search;
+
+import ai.djl.engine.Engine;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.AbstractInProcessEmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.OnnxBertBiEncoder;
+import dev.langchain4j.model.embedding.onnx.PoolingMode;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import org.jetbrains.annotations.Nullable;
+import rearth.oracle.Oracle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executor;
+
+/**
+ * Sentence transformer models run through ONNX runtime, with a HuggingFace tokenizer. Either the model bundled with
+ * the mod, or any compatible model a player puts into the models folder (a {@code model.onnx} and a
+ * {@code tokenizer.json}), see {@link EmbeddingProviders#registerDefaults(Path, Path)}.
+ */
+public class OnnxEmbeddingProvider implements EmbeddingProvider {
+
+    public static final String BUNDLED_ID = "all-minilm-l6-v2-q";
+
+    private static Boolean runtimeAvailable;
+
+    private final String id;
+    private final String description;
+    // bundled models are extracted into this folder, custom models are loaded from it
+    private final Path modelDir;
+    private final boolean bundled;
+
+    private OnnxEmbeddingProvider(String id, String description, Path modelDir, boolean bundled) {
+        this.id = id;
+        this.description = description;
+        this.modelDir = modelDir;
+        this.bundled = bundled;
+    }
+
+    /**
+     * The all-MiniLM-L6-v2 model shipped in the mod jar, quantized to 8 bit.
+     *
+     * @param extractDir where the model files are extracted to, so they can be loaded and closed again
+     */
+    public static OnnxEmbeddingProvider bundled(Path extractDir) {
+        return new OnnxEmbeddingProvider(BUNDLED_ID, "all-MiniLM-L6-v2, 8 bit (bundled, ONNX)", extractDir, true);
+    }
+
+    /**
+     * A model from a folder containing {@code model.onnx} and {@code tokenizer.json}. The folder name is the id.
+     */
+    public static OnnxEmbeddingProvider fromDirectory(Path directory) {
+        var id = directory.getFileName().toString();
+        return new OnnxEmbeddingProvider(id, id + " (ONNX, " + directory + ")", directory, false);
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String description() {
+        return description;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        if (!isRuntimeAvailable()) return false;
+        return bundled || (Files.isRegularFile(modelDir.resolve("model.onnx")) && Files.isRegularFile(modelDir.resolve("tokenizer.json")));
+    }
+
+    /**
+     * Loads the ONNX runtime natives once, so platforms without them fall back to another provider instead of
+     * failing on the first search. Uses the same class loader as {@link #create}, since that decides where the
+     * natives are found.
+     */
+    private static synchronized boolean isRuntimeAvailable() {
+        if (runtimeAvailable == null) {
+            var original = Thread.currentThread().getContextClassLoader();
+            try {
+                Thread.currentThread().setContextClassLoader(Engine.class.getClassLoader());
+                OrtEnvironment.getEnvironment();
+                runtimeAvailable = true;
+            } catch (RuntimeException | LinkageError e) {
+                Oracle.LOGGER.warn("ONNX runtime is not available on this platform: {}", e.toString());
+                runtimeAvailable = false;
+            } finally {
+                Thread.currentThread().setContextClassLoader(original);
+            }
+        }
+        return runtimeAvailable;
+    }
+
+    @Override
+    public EmbeddingModel create(Executor workers, int intraOpThreads) {
+        // workaround for weird neoforge different class loading issues?
+        var original = Thread.currentThread().getContextClassLoader();
+        try {
+            // Inject the class loader that actually has the DJL engine resources
+            Thread.currentThread().setContextClassLoader(Engine.class.getClassLoader());
+
+            if (!bundled)
+                return sessionModel(modelDir.resolve("model.onnx"), modelDir.resolve("tokenizer.json"), workers, intraOpThreads);
+
+            // the bundled model class keeps its session in a static field forever, so the same model files
+            // are loaded into an own session instead, which can be closed when idle
+            var modelFile = extractModelFile(id + ".onnx");
+            var tokenizerFile = extractModelFile(id + "-tokenizer.json");
+            if (modelFile != null && tokenizerFile != null)
+                return sessionModel(modelFile, tokenizerFile, workers, intraOpThreads);
+
+            Oracle.LOGGER.warn("Unable to extract the embedding model, it will stay loaded while the game runs");
+            return new AllMiniLmL6V2QuantizedEmbeddingModel(workers);
+        } finally {
+            // Restore the original loader to avoid side‑effects
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    /**
+     * Loads the model into a new session. Every session gets its own thread settings: parallelism across chunks comes
+     * from the workers, so a session only needs a few threads for a single inference, instead of one per core.
+     */
+    private static EmbeddingModel sessionModel(Path modelFile, Path tokenizerFile, Executor workers, int intraOpThreads) {
+        var environment = OrtEnvironment.getEnvironment();
+        OrtSession session = null;
+        try (var options = new OrtSession.SessionOptions(); var tokenizer = Files.newInputStream(tokenizerFile)) {
+            options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+            options.setInterOpNumThreads(1);
+            if (intraOpThreads > 0) options.setIntraOpNumThreads(intraOpThreads);
+            session = environment.createSession(modelFile.toString(), options);
+            return new SessionEmbeddingModel(new OnnxBertBiEncoder(environment, session, tokenizer, PoolingMode.MEAN), workers);
+        } catch (OrtException | IOException | RuntimeException e) {
+            if (session != null) {
+                try {
+                    session.close();
+                } catch (OrtException ignored) {
+                }
+            }
+            throw new IllegalStateException("Unable to load embedding model " + modelFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copies a bundled model file to the model directory. A file of the same size that was extracted before is
+     * reused, so lazy reloads don't read the model out of the jar again.
+     */
+    @Nullable
+    private Path extractModelFile(String name) {
+        var target = modelDir.resolve(name);
+        // the class literal doesn't initialize the class, so this doesn't load its static model
+        var resource = AllMiniLmL6V2QuantizedEmbeddingModel.class.getResource("/" + name);
+        if (resource == null) return null;
+        try {
+            var connection = resource.openConnection();
+            // the size comes from the jar directory, -1 if the source doesn't know it
+            var size = connection.getContentLengthLong();
+            if (size >= 0 && Files.isRegularFile(target) && Files.size(target) == size) return target;
+
+            Files.createDirectories(target.getParent());
+            var temp = target.resolveSibling(name + ".tmp");
+            try (var stream = connection.getInputStream()) {
+                Files.copy(stream, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } catch (IOException e) {
+            Oracle.LOGGER.warn("Unable to extract model file {}: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    // OnnxEmbeddingModel only accepts file paths and creates its session with default options
+    private static class SessionEmbeddingModel extends AbstractInProcessEmbeddingModel {
+
+        private final OnnxBertBiEncoder encoder;
+
+        private SessionEmbeddingModel(OnnxBertBiEncoder encoder, Executor workers) {
+            super(workers);
+            this.encoder = encoder;
+        }
+
+        @Override
+        protected OnnxBertBiEncoder model() {
+            return encoder;
+        }
+
+    }
+
+}
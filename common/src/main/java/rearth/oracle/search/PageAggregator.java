@@ -0,0 +1,96 @@
+package rearth.oracle.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Ranking stage that turns scored chunks into scored pages. Chunks are grouped by page key in a hash map, so adding
+ * a chunk is constant time, and the best pages are selected with a bounded heap.
+ *
+ * <p>Chunk scores are pooled per page with a soft maximum, {@code t * log(sum(exp(score / t)))}. With a temperature
+ * of 0 this is the plain maximum. Small temperatures keep the best chunk dominant, but let a page with several good
+ * chunks rank above a page with a single one of the same score.</p>
+ *
+ * @param <K> page key
+ * @param <T> chunk payload
+ */
+public class PageAggregator<K, T> {
+
+    private final double temperature;
+    private final Map<K, Group<T>> groups = new HashMap<>();
+
+    /**
+     * @param temperature soft maximum temperature, 0 for max pooling
+     */
+    public PageAggregator(double temperature) {
+        this.temperature = temperature;
+    }
+
+    public void add(K page, T chunk, double score) {
+        groups.computeIfAbsent(page, key -> new Group<>()).add(chunk, score);
+    }
+
+    public int size() {
+        return groups.size();
+    }
+
+    /**
+     * @return up to {@code maxPages} pages, best pooled score first. The chunks of each page are sorted best first.
+     */
+    public List<Page<K, T>> top(int maxPages) {
+        var best = new PriorityQueue<Page<K, T>>(maxPages + 1, Comparator.comparingDouble(Page::score));
+        for (var entry : groups.entrySet()) {
+            var group = entry.getValue();
+            var score = pooledScore(group);
+            if (best.size() < maxPages) {
+                best.add(new Page<>(entry.getKey(), score, group.maxScore, group.chunks));
+            } else if (score > best.peek().score()) {
+                best.poll();
+                best.add(new Page<>(entry.getKey(), score, group.maxScore, group.chunks));
+            }
+        }
+
+        var pages = new ArrayList<>(best);
+        pages.sort(Comparator.comparingDouble(Page<K, T>::score).reversed());
+        return pages.stream().map(page -> new Page<>(page.key(), page.score(), page.maxScore(), sortedChunks(page.chunks()))).toList();
+    }
+
+    private double pooledScore(Group<T> group) {
+        if (temperature <= 0 || group.chunks.size() == 1) return group.maxScore;
+        // relative to the maximum, so exp never overflows
+        var sum = 0.0;
+        for (var chunk : group.chunks) sum += Math.exp((chunk.score() - group.maxScore) / temperature);
+        return group.maxScore + temperature * Math.log(sum);
+    }
+
+    private static <T> List<ScoredChunk<T>> sortedChunks(List<ScoredChunk<T>> chunks) {
+        var sorted = new ArrayList<>(chunks);
+        sorted.sort(Comparator.comparingDouble(ScoredChunk<T>::score).reversed());
+        return sorted;
+    }
+
+    private static final class Group<T> {
+        private final List<ScoredChunk<T>> chunks = new ArrayList<>(2);
+        private double maxScore = Double.NEGATIVE_INFINITY;
+
+        void add(T chunk, double score) {
+            chunks.add(new ScoredChunk<>(chunk, score));
+            maxScore = Math.max(maxScore, score);
+        }
+    }
+
+    /**
+     * @param score    pooled score, used for the ranking
+     * @param maxScore score of the best chunk
+     */
+    public record Page<K, T>(K key, double score, double maxScore, List<ScoredChunk<T>> chunks) {
+    }
+
+    public record ScoredChunk<T>(T chunk, double score) {
+    }
+
+}
@@ -0,0 +1,86 @@
+package rearth.oracle.search;
+
+import com.google.gson.JsonParser;
+import dev.langchain4j.data.segment.TextSegment;
+import rearth.oracle.SemanticSearch;
+import rearth.oracle.docs.DocsFormat;
+import rearth.oracle.docs.DocsIndexer;
+import rearth.oracle.docs.LegacyDocsFormat;
+import rearth.oracle.docs.V1DocsFormat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/**
+ * Build-time entry point that embeds all pages of a wiki folder and writes them as a prebuilt index, in the
+ * {@link EmbeddingCache} format. Shipped at {@code books/<wiki>/.search/embeddings-<model>.bin}, the index is picked
+ * up by {@link SemanticSearch}, and any chunk contained in it is not embedded again at runtime.
+ *
+ * <p>Runs outside the game: only the page text is needed, since cache keys depend on the chunk text alone.</p>
+ *
+ * <p>Usage: {@code PrebuiltIndexGenerator <wiki folder> <output file> [model]}, where the model is the id of an
+ * {@link EmbeddingProvider} or the folder of a custom ONNX model, the bundled model by default. The index is only used
+ * by players who selected the same model.</p>
+ */
+public class PrebuiltIndexGenerator {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: PrebuiltIndexGenerator <wiki folder> <output file> [model]");
+            System.exit(1);
+        }
+
+        var wikiRoot = Path.of(args[0]);
+        var output = Path.of(args[1]);
+        EmbeddingProviders.register(OnnxEmbeddingProvider.bundled(Files.createTempDirectory("oracle-models")));
+        var provider = EmbeddingProviders.forTool(args.length == 3 ? args[2] : EmbeddingProviders.DEFAULT_ID);
+
+        var texts = new LinkedHashSet<String>();
+        for (var file : indexedPages(wikiRoot)) {
+            texts.addAll(IndexingPipeline.chunkTexts(Files.readString(file, StandardCharsets.UTF_8)));
+        }
+
+        Files.deleteIfExists(output);
+        var cache = EmbeddingCache.load(output, provider.id());
+        var executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        try {
+            var pipeline = new IndexingPipeline(executor, cache);
+            var segments = texts.stream().map(TextSegment::from).toList();
+            pipeline.embed(() -> provider.create(executor, 1), segments);
+        } finally {
+            executor.shutdown();
+        }
+
+        cache.save();
+        System.out.println("Wrote " + cache.size() + " prebuilt " + provider.id() + " embeddings to " + output);
+    }
+
+    /**
+     * Same pages the runtime indexes: mdx files, without translations. Where translations are placed depends on the
+     * docs format of the wiki, which is detected the same way as ingame.
+     */
+    static List<Path> indexedPages(Path wikiRoot) throws IOException {
+        var format = detectFormat(wikiRoot);
+        try (var files = Files.walk(wikiRoot)) {
+            return files.filter(file -> Files.isRegularFile(file) && file.toString().endsWith(".mdx"))
+                     .filter(file -> !format.isTranslatedPath("/" + wikiRoot.relativize(file).toString().replace('\\', '/')))
+                     .sorted()
+                     .toList();
+        }
+    }
+
+    private static DocsFormat detectFormat(Path wikiRoot) throws IOException {
+        var meta = wikiRoot.resolve(DocsIndexer.WIKI_META_FILE);
+        if (Files.isRegularFile(meta)) {
+            var schema = JsonParser.parseString(Files.readString(meta, StandardCharsets.UTF_8)).getAsJsonObject().get("schema");
+            if (schema != null && DocsIndexer.SCHEMA_V1.equals(schema.getAsString())) return new V1DocsFormat();
+        }
+        return new LegacyDocsFormat();
+    }
+
+}
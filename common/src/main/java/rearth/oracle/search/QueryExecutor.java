@@ -0,0 +1,81 @@
+package rearth.oracle.search;
+
+import rearth.oracle.Oracle;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs search queries off the render thread. Queries submitted in quick succession are coalesced, so only the
+ * newest one starts once typing pauses for {@code debounceMillis}. Every submit starts a new generation; a query
+ * whose generation is outdated is skipped before it runs, and its result is dropped if it finishes late.
+ *
+ * <p>All executors share one background thread, so at most one query is evaluated at a time.</p>
+ */
+public class QueryExecutor<T> {
+
+    private static final ScheduledExecutorService QUERY_THREAD = Executors.newSingleThreadScheduledExecutor(task -> {
+        var thread = new Thread(task, "Oracle Search Query");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long debounceMillis;
+    private final Function<String, T> task;
+    private final Executor resultExecutor;
+    private final AtomicLong generation = new AtomicLong();
+    private ScheduledFuture<?> pending;
+
+    /**
+     * @param debounceMillis how long a query waits for newer input before it runs
+     * @param task           the query evaluation, called on the background thread
+     * @param resultExecutor where results are delivered, usually the client thread
+     */
+    public QueryExecutor(long debounceMillis, Function<String, T> task, Executor resultExecutor) {
+        this.debounceMillis = debounceMillis;
+        this.task = task;
+        this.resultExecutor = resultExecutor;
+    }
+
+    /**
+     * Schedules a query, replacing any query that has not been delivered yet.
+     */
+    public synchronized void submit(String query, Consumer<T> onResult) {
+        var id = generation.incrementAndGet();
+        if (pending != null) pending.cancel(false);
+
+        pending = QUERY_THREAD.schedule(() -> {
+            if (generation.get() != id) return;
+
+            T result;
+            try {
+                result = task.apply(query);
+            } catch (RuntimeException e) {
+                Oracle.LOGGER.warn("Search query '{}' failed: {}", query, e.getMessage());
+                return;
+            }
+
+            if (generation.get() != id) return;
+            resultExecutor.execute(() -> {
+                // a newer query may have been submitted while this result was queued
+                if (generation.get() == id) onResult.accept(result);
+            });
+        }, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops the pending query and any result that is still in flight.
+     */
+    public synchronized void cancel() {
+        generation.incrementAndGet();
+        if (pending != null) pending.cancel(false);
+        pending = null;
+    }
+
+}
@@ -0,0 +1,180 @@
+package rearth.oracle.search;
+
+import java.util.Arrays;
+
+/**
+ * Pre-rendered preview of a search chunk: its text as a list of styled runs. Created once by the
+ * {@link MarkdownChunker} at indexing time, so showing a result never has to parse markdown again.
+ *
+ * <p>Stored compactly as one string plus the end offset and style bits of every run. Immutable.</p>
+ */
+public final class SearchPreview {
+
+    public static final int BOLD = 1;
+    public static final int ITALIC = 1 << 1;
+    public static final int CODE = 1 << 2;
+    public static final int LINK = 1 << 3;
+
+    /**
+     * Previews only need the first few lines of a chunk.
+     */
+    public static final int MAX_LENGTH = 300;
+
+    private static final SearchPreview EMPTY = new SearchPreview("", new int[0], new byte[0]);
+
+    private final String text;
+    private final int[] runEnds;
+    private final byte[] runStyles;
+
+    private SearchPreview(String text, int[] runEnds, byte[] runStyles) {
+        this.text = text;
+        this.runEnds = runEnds;
+        this.runStyles = runStyles;
+    }
+
+    public static SearchPreview empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Unstyled preview, for chunks that were indexed without one.
+     */
+    public static SearchPreview plain(String text) {
+        return new Builder().append(text, 0).build().truncate(MAX_LENGTH);
+    }
+
+    public String text() {
+        return text;
+    }
+
+    public boolean isEmpty() {
+        return text.isEmpty();
+    }
+
+    public int runCount() {
+        return runEnds.length;
+    }
+
+    public int runStart(int run) {
+        return run == 0 ? 0 : runEnds[run - 1];
+    }
+
+    public int runEnd(int run) {
+        return runEnds[run];
+    }
+
+    /**
+     * @return the style bits of the run, see {@link #BOLD}, {@link #ITALIC}, {@link #CODE} and {@link #LINK}
+     */
+    public int runStyle(int run) {
+        return runStyles[run];
+    }
+
+    public String runText(int run) {
+        return text.substring(runStart(run), runEnd(run));
+    }
+
+    /**
+     * @return the characters from {@code start} to {@code end}, keeping their styles
+     */
+    public SearchPreview slice(int start, int end) {
+        if (start == 0 && end == text.length()) return this;
+        var builder = new Builder();
+        for (int run = 0; run < runEnds.length; run++) {
+            var from = Math.max(start, runStart(run));
+            var to = Math.min(end, runEnd(run));
+            if (from < to) builder.append(text.substring(from, to), runStyles[run]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return this preview cut at a word boundary to at most {@code maxLength} characters, ending with an ellipsis
+     */
+    public SearchPreview truncate(int maxLength) {
+        if (text.length() <= maxLength) return this;
+        var cut = text.lastIndexOf(' ', maxLength - 1);
+        if (cut < maxLength / 2) cut = maxLength - 1;
+        var builder = new Builder();
+        builder.append(slice(0, cut));
+        builder.append("\u2026", 0);
+        return builder.build();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SearchPreview preview && text.equals(preview.text)
+                 && Arrays.equals(runEnds, preview.runEnds) && Arrays.equals(runStyles, preview.runStyles);
+    }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode() * 31 + Arrays.hashCode(runStyles);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchPreview[" + text + "]";
+    }
+
+    /**
+     * Appends styled text, merging neighbouring runs of the same style.
+     */
+    public static final class Builder {
+
+        private final StringBuilder text = new StringBuilder();
+        private int[] runEnds = new int[4];
+        private byte[] runStyles = new byte[4];
+        private int runs = 0;
+
+        public Builder append(String part, int style) {
+            if (part.isEmpty()) return this;
+            text.append(part);
+            if (runs > 0 && runStyles[runs - 1] == style) {
+                runEnds[runs - 1] = text.length();
+                return this;
+            }
+            if (runs == runEnds.length) {
+                runEnds = Arrays.copyOf(runEnds, runs * 2);
+                runStyles = Arrays.copyOf(runStyles, runs * 2);
+            }
+            runEnds[runs] = text.length();
+            runStyles[runs] = (byte) style;
+            runs++;
+            return this;
+        }
+
+        public Builder append(SearchPreview preview) {
+            for (int run = 0; run < preview.runCount(); run++) append(preview.runText(run), preview.runStyle(run));
+            return this;
+        }
+
+        public int length() {
+            return text.length();
+        }
+
+        public char lastChar() {
+            return text.isEmpty() ? 0 : text.charAt(text.length() - 1);
+        }
+
+        /**
+         * Removes the last character, e.g. a space before a line break.
+         */
+        public void removeLast() {
+            if (runs == 0) return;
+            text.setLength(text.length() - 1);
+            runEnds[runs - 1]--;
+            if (runs > 1 ? runEnds[runs - 1] == runEnds[runs - 2] : runEnds[0] == 0) runs--;
+        }
+
+        public void stripTrailing() {
+            while (runs > 0 && Character.isWhitespace(lastChar())) removeLast();
+        }
+
+        public SearchPreview build() {
+            if (runs == 0) return EMPTY;
+            return new SearchPreview(text.toString(), Arrays.copyOf(runEnds, runs), Arrays.copyOf(runStyles, runs));
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package rearth.oracle.search;
+
+import java.io.InvalidObjectException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Whether the search can answer queries, tracked across indexing jobs. Once ready, it stays ready through later
+ * reloads, since those keep serving the previous index. A failure only lasts until the next job starts, so a reload
+ * after a failed job can make the search ready again.
+ */
+public class SearchReadiness {
+
+    private volatile CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    /**
+     * Called when an indexing job starts. Clears a failure of the previous job, waiting for this one instead.
+     */
+    public synchronized void jobStarted() {
+        if (ready.isCompletedExceptionally()) ready = new CompletableFuture<>();
+    }
+
+    public void markReady() {
+        ready.complete(null);
+    }
+
+    /**
+     * The job failed without anything to answer queries with. Has no effect once the search is ready.
+     */
+    public void markFailed(String message) {
+        ready.completeExceptionally(new InvalidObjectException(message));
+    }
+
+    /**
+     * @throws InvalidObjectException if the latest job failed and nothing can answer queries
+     */
+    public boolean isReady() throws InvalidObjectException {
+        var current = ready;
+        if (current.isCompletedExceptionally()) {
+            throw new InvalidObjectException("Embeddings failed to load");
+        }
+        return current.isDone();
+    }
+
+    /**
+     * Completes once queries can be answered, or exceptionally if the current job failed.
+     */
+    public CompletableFuture<Void> whenReady() {
+        return ready.copy();
+    }
+
+}
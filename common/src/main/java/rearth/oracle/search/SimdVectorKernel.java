@@ -0,0 +1,51 @@
+package rearth.oracle.search;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of {@link VectorKernel}. Only loaded reflectively, after checking that
+ * the incubator module is present, since referencing it otherwise fails with a {@link NoClassDefFoundError}.
+ */
+final class SimdVectorKernel implements VectorKernel {
+
+    // the widest shape the CPU supports natively, fixed wider shapes would be emulated on 128-bit hardware
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // as many bytes as float lanes, but at least 64 bits (the smallest shape), which then widen into several float vectors
+    private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, FLOATS.length() * Byte.SIZE)));
+    private static final int PARTS = BYTES.length() / FLOATS.length();
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        var acc = FloatVector.zero(FLOATS);
+        var upper = FLOATS.loopBound(a.length);
+        int i = 0;
+        for (; i < upper; i += FLOATS.length()) {
+            acc = FloatVector.fromArray(FLOATS, a, i).fma(FloatVector.fromArray(FLOATS, b, i), acc);
+        }
+        var sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+    @Override
+    public float dotInt8(float[] query, byte[] row) {
+        var acc = FloatVector.zero(FLOATS);
+        var upper = BYTES.loopBound(query.length);
+        int i = 0;
+        for (; i < upper; i += BYTES.length()) {
+            var bytes = ByteVector.fromArray(BYTES, row, i);
+            for (int part = 0; part < PARTS; part++) {
+                var widened = (FloatVector) bytes.convertShape(VectorOperators.B2F, FLOATS, part);
+                acc = FloatVector.fromArray(FLOATS, query, i + part * FLOATS.length()).fma(widened, acc);
+            }
+        }
+        var sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) sum += query[i] * row[i];
+        return sum;
+    }
+
+}
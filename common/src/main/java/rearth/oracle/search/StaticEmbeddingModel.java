@@ -0,0 +1,141 @@
+package rearth.oracle.search;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static embedding model (model2vec style): every token has a precomputed vector, and the embedding of a text is
+ * the normalized mean of the vectors of its tokens. No neural network runs at query time, so embedding a query
+ * takes microseconds and works on every platform, at the cost of some quality compared to a sentence transformer.
+ *
+ * <p>The token matrix is read from a {@code safetensors} file, which is memory-mapped instead of loaded into the
+ * heap. Float32 and float16 matrices are supported.</p>
+ */
+public class StaticEmbeddingModel implements EmbeddingModel {
+
+    static final int MAX_TOKENS = 512;
+
+    private final WordPieceTokenizer tokenizer;
+    private final ByteBuffer matrix;
+    private final boolean halfPrecision;
+    private final int rows;
+    private final int dimension;
+
+    public StaticEmbeddingModel(WordPieceTokenizer tokenizer, ByteBuffer matrix, boolean halfPrecision, int rows, int dimension) {
+        this.tokenizer = tokenizer;
+        this.matrix = matrix.order(ByteOrder.LITTLE_ENDIAN);
+        this.halfPrecision = halfPrecision;
+        this.rows = rows;
+        this.dimension = dimension;
+    }
+
+    /**
+     * Maps the token matrix of a {@code safetensors} file. Uses the tensor named {@code embeddings}, or the only
+     * two-dimensional tensor of the file.
+     *
+     * @throws IOException if the file can't be read or contains no usable matrix
+     */
+    public static StaticEmbeddingModel load(Path safetensors, Path tokenizerJson) throws IOException {
+        var tokenizer = WordPieceTokenizer.load(tokenizerJson);
+        try (var channel = FileChannel.open(safetensors, StandardOpenOption.READ)) {
+            var headerLength = readFully(channel, Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).getLong();
+            if (headerLength <= 0 || headerLength > channel.size() - Long.BYTES)
+                throw new IOException("Invalid safetensors header in " + safetensors);
+
+            var headerBytes = readFully(channel, (int) headerLength).array();
+            var header = JsonParser.parseString(new String(headerBytes, StandardCharsets.UTF_8)).getAsJsonObject();
+
+            var tensor = findMatrix(header);
+            if (tensor == null) throw new IOException("No embedding matrix found in " + safetensors);
+            var dtype = tensor.get("dtype").getAsString();
+            if (!dtype.equals("F32") && !dtype.equals("F16")) throw new IOException("Unsupported matrix type " + dtype + " in " + safetensors);
+
+            var shape = tensor.getAsJsonArray("shape");
+            var rows = shape.get(0).getAsInt();
+            var dimension = shape.get(1).getAsInt();
+            var offsets = tensor.getAsJsonArray("data_offsets");
+            var dataStart = Long.BYTES + headerLength + offsets.get(0).getAsLong();
+            var dataLength = offsets.get(1).getAsLong() - offsets.get(0).getAsLong();
+            var halfPrecision = dtype.equals("F16");
+            if (dataLength != (long) rows * dimension * (halfPrecision ? 2 : 4) || dataStart + dataLength > channel.size())
+                throw new IOException("Matrix size doesn't match its shape in " + safetensors);
+
+            // the mapping stays valid after the channel is closed
+            var matrix = channel.map(FileChannel.MapMode.READ_ONLY, dataStart, dataLength);
+            return new StaticEmbeddingModel(tokenizer, matrix, halfPrecision, rows, dimension);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid safetensors file " + safetensors, e);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Unexpected end of file");
+        }
+        return buffer.flip();
+    }
+
+    private static JsonObject findMatrix(JsonObject header) {
+        if (header.has("embeddings")) return header.getAsJsonObject("embeddings");
+        JsonObject found = null;
+        for (var entry : header.entrySet()) {
+            if (entry.getKey().equals("__metadata__") || !entry.getValue().isJsonObject()) continue;
+            var tensor = entry.getValue().getAsJsonObject();
+            if (tensor.getAsJsonArray("shape").size() != 2) continue;
+            if (found != null) return null;
+            found = tensor;
+        }
+        return found;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        var embeddings = new ArrayList<Embedding>(segments.size());
+        for (var segment : segments) embeddings.add(Embedding.from(embed(segment.text(), new float[dimension])));
+        return Response.from(embeddings);
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Sums the token vectors into {@code sum} and normalizes it. A text without known tokens is the zero vector.
+     */
+    float[] embed(String text, float[] sum) {
+        tokenizer.tokenize(text, MAX_TOKENS, id -> {
+            if (id < 0 || id >= rows) return;
+            var row = (long) id * dimension;
+            if (halfPrecision) {
+                for (int i = 0; i < dimension; i++) sum[i] += Float.float16ToFloat(matrix.getShort((int) ((row + i) * 2)));
+            } else {
+                for (int i = 0; i < dimension; i++) sum[i] += matrix.getFloat((int) ((row + i) * 4));
+            }
+        });
+
+        // dividing by the token count doesn't change the direction, so the mean is normalized right away
+        var length = 0d;
+        for (var value : sum) length += value * value;
+        if (length == 0) return sum;
+        var scale = (float) (1 / Math.sqrt(length));
+        for (int i = 0; i < dimension; i++) sum[i] *= scale;
+        return sum;
+    }
+
+}
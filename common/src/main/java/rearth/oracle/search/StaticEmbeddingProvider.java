@@ -0,0 +1,120 @@
+package rearth.oracle.search;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import rearth.oracle.Oracle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executor;
+
+/**
+ * Static embedding models, see {@link StaticEmbeddingModel}. Pure Java, so they also run where the ONNX runtime has
+ * no natives. A model folder contains the {@code model.safetensors} and {@code tokenizer.json} of a model2vec model
+ * (e.g. one of the potion models), see {@link EmbeddingProviders#registerDefaults(Path, Path)}.
+ */
+public class StaticEmbeddingProvider implements EmbeddingProvider {
+
+    public static final String BUNDLED_ID = "static";
+    public static final String MODEL_FILE = "model.safetensors";
+    public static final String TOKENIZER_FILE = "tokenizer.json";
+
+    // resource folder of a static model shipped in the mod jar
+    private static final String BUNDLED_RESOURCE = "/assets/oracle_index/models/static/";
+
+    private final String id;
+    private final String description;
+    // bundled models are extracted into this folder, custom models are loaded from it
+    private final Path modelDir;
+    private final boolean bundled;
+
+    private StaticEmbeddingProvider(String id, String description, Path modelDir, boolean bundled) {
+        this.id = id;
+        this.description = description;
+        this.modelDir = modelDir;
+        this.bundled = bundled;
+    }
+
+    /**
+     * A static model shipped in the mod jar, if the build includes one. Oracle Index itself doesn't, so this is only
+     * available if the files were added to the jar. Jar resources can't be memory-mapped, so the files are extracted first.
+     *
+     * @param extractDir where the model files are extracted to
+     */
+    public static StaticEmbeddingProvider bundled(Path extractDir) {
+        return new StaticEmbeddingProvider(BUNDLED_ID, "static token embeddings (from the mod jar, pure Java)", extractDir.resolve(BUNDLED_ID), true);
+    }
+
+    /**
+     * A model from a folder containing {@code model.safetensors} and {@code tokenizer.json}. The folder name is the id.
+     */
+    public static StaticEmbeddingProvider fromDirectory(Path directory) {
+        var id = directory.getFileName().toString();
+        return new StaticEmbeddingProvider(id, id + " (static, " + directory + ")", directory, false);
+    }
+
+    /**
+     * @return whether the folder contains a static model
+     */
+    public static boolean isModelDirectory(Path directory) {
+        return Files.isRegularFile(directory.resolve(MODEL_FILE)) && Files.isRegularFile(directory.resolve(TOKENIZER_FILE));
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String description() {
+        return description;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        if (bundled) return StaticEmbeddingProvider.class.getResource(BUNDLED_RESOURCE + MODEL_FILE) != null;
+        return isModelDirectory(modelDir);
+    }
+
+    @Override
+    public EmbeddingModel create(Executor workers, int intraOpThreads) {
+        try {
+            if (bundled) {
+                extractModelFile(MODEL_FILE);
+                extractModelFile(TOKENIZER_FILE);
+            }
+            return StaticEmbeddingModel.load(modelDir.resolve(MODEL_FILE), modelDir.resolve(TOKENIZER_FILE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load static embedding model " + id, e);
+        }
+    }
+
+    private void extractModelFile(String name) throws IOException {
+        var target = modelDir.resolve(name);
+        try (InputStream stream = StaticEmbeddingProvider.class.getResourceAsStream(BUNDLED_RESOURCE + name)) {
+            if (stream == null) throw new IOException("Missing bundled model file " + name);
+            var expectedSize = resourceSize(name);
+            if (expectedSize >= 0 && Files.isRegularFile(target) && Files.size(target) == expectedSize) return;
+
+            Files.createDirectories(modelDir);
+            var temp = target.resolveSibling(name + ".tmp");
+            Files.copy(stream, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Oracle.LOGGER.debug("Extracted static model file {}", target);
+        }
+    }
+
+    private static long resourceSize(String name) {
+        var url = StaticEmbeddingProvider.class.getResource(BUNDLED_RESOURCE + name);
+        if (url == null) return -1;
+        try {
+            return url.openConnection().getContentLengthLong();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+package rearth.oracle.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * Prefix index over short names (page titles, item ids and item names) for as-you-type suggestions.
+ *
+ * <p>Every word start of every name is stored as one key, so "laser" finds "Enderic Laser". Keys match if the
+ * query is within a small edit distance of one of their prefixes (none for short queries, one for four or more
+ * characters, two from eight on), so typos and swapped letters still find the page. The keys within the largest
+ * distance of the last query are kept, and a query that only extends the previous one is matched against those
+ * instead of all keys, since appending characters can never bring a key closer.</p>
+ *
+ * <p>Immutable apart from that last-query state, which is guarded by the instance lock.</p>
+ *
+ * @param <T> payload returned for matching names
+ */
+public class TitleTypeahead<T> {
+
+    private static final int TRACKED_EDITS = 2;
+
+    private final List<T> payloads;
+    private final String[] keys;        // sorted word-start suffixes of the normalized names
+    private final int[] keyEntries;     // key index -> payload index
+    private final boolean[] keyIsStart; // whether the key is the start of the full name
+
+    private String lastQuery = null;
+    private int[] lastCandidates = new int[0];
+
+    private TitleTypeahead(List<T> payloads, String[] keys, int[] keyEntries, boolean[] keyIsStart) {
+        this.payloads = payloads;
+        this.keys = keys;
+        this.keyEntries = keyEntries;
+        this.keyIsStart = keyIsStart;
+    }
+
+    public static <T> TitleTypeahead<T> build(List<Entry<T>> entries) {
+        var payloads = new ArrayList<T>(entries.size());
+        var rawKeys = new ArrayList<Key>();
+
+        for (int entry = 0; entry < entries.size(); entry++) {
+            payloads.add(entries.get(entry).payload());
+            var name = normalize(entries.get(entry).name());
+            if (name.isEmpty()) continue;
+
+            rawKeys.add(new Key(name, entry, true));
+            for (int i = 1; i < name.length(); i++) {
+                if (name.charAt(i - 1) == ' ') rawKeys.add(new Key(name.substring(i), entry, false));
+            }
+        }
+
+        rawKeys.sort(Comparator.comparing(Key::text));
+        var keys = new String[rawKeys.size()];
+        var keyEntries = new int[rawKeys.size()];
+        var keyIsStart = new boolean[rawKeys.size()];
+        for (int i = 0; i < rawKeys.size(); i++) {
+            keys[i] = rawKeys.get(i).text();
+            keyEntries[i] = rawKeys.get(i).entry();
+            keyIsStart[i] = rawKeys.get(i).start();
+        }
+
+        return new TitleTypeahead<>(List.copyOf(payloads), keys, keyEntries, keyIsStart);
+    }
+
+    public int size() {
+        return payloads.size();
+    }
+
+    /**
+     * @return up to {@code maxResults} distinct payloads. Exact prefix matches come first, full-name matches before
+     * word matches, and shorter names before longer ones.
+     */
+    public synchronized List<T> suggest(String query, int maxResults) {
+        var normalized = normalize(query);
+        if (normalized.isEmpty()) return List.of();
+
+        var maxEdits = normalized.length() >= 8 ? 2 : normalized.length() >= 4 ? 1 : 0;
+
+        var candidates = lastQuery != null && normalized.startsWith(lastQuery) ? lastCandidates : IntStream.range(0, keys.length).toArray();
+
+        var distances = new int[keys.length];
+        var tracked = new int[candidates.length];
+        var trackedCount = 0;
+        var matches = new ArrayList<Integer>();
+        for (var key : candidates) {
+            var distance = prefixDistance(normalized, keys[key], TRACKED_EDITS);
+            if (distance > TRACKED_EDITS) continue;
+            tracked[trackedCount++] = key;
+            distances[key] = distance;
+            if (distance <= maxEdits) matches.add(key);
+        }
+
+        lastQuery = normalized;
+        lastCandidates = Arrays.copyOf(tracked, trackedCount);
+
+        var ranked = matches.stream()
+                       .sorted(Comparator.<Integer>comparingInt(key -> distances[key])
+                                 .thenComparing(key -> !keyIsStart[key])
+                                 .thenComparingInt(key -> keys[key].length())
+                                 .thenComparing(key -> keys[key]))
+                       .toList();
+
+        // several names may point to the same payload, e.g. a page title and its item id
+        var results = new LinkedHashSet<T>();
+        for (var key : ranked) {
+            results.add(payloads.get(keyEntries[key]));
+            if (results.size() >= maxResults) break;
+        }
+
+        return List.copyOf(results);
+    }
+
+    /**
+     * Lower case, with every run of other characters (spaces, underscores, colons) collapsed to a single space.
+     */
+    public static String normalize(String text) {
+        var builder = new StringBuilder(text.length());
+        var lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            var c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(c);
+            } else if (!builder.isEmpty() && builder.charAt(builder.length() - 1) != ' ') {
+                builder.append(' ');
+            }
+        }
+        var length = builder.length();
+        if (length > 0 && builder.charAt(length - 1) == ' ') builder.setLength(length - 1);
+        return builder.toString();
+    }
+
+    /**
+     * Edit distance (with adjacent swaps) between the query and the closest prefix of the key,
+     * or {@code maxEdits + 1} if it exceeds the limit.
+     */
+    static int prefixDistance(String query, String key, int maxEdits) {
+        if (key.startsWith(query)) return 0;
+        if (maxEdits == 0) return 1;
+
+        var columns = Math.min(key.length(), query.length() + maxEdits);
+        var beforePrevious = new int[columns + 1];
+        var previous = new int[columns + 1];
+        var current = new int[columns + 1];
+        for (int j = 0; j <= columns; j++) previous[j] = j;
+
+        for (int i = 1; i <= query.length(); i++) {
+            current[0] = i;
+            var rowMin = current[0];
+            for (int j = 1; j <= columns; j++) {
+                var cost = query.charAt(i - 1) == key.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && query.charAt(i - 1) == key.charAt(j - 2) && query.charAt(i - 2) == key.charAt(j - 1))
+                    current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) return maxEdits + 1;
+            var swap = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = swap;
+        }
+
+        var best = maxEdits + 1;
+        for (var value : previous) best = Math.min(best, value);
+        return best;
+    }
+
+    public record Entry<T>(String name, T payload) {
+    }
+
+    private record Key(String text, int entry, boolean start) {
+    }
+
+}
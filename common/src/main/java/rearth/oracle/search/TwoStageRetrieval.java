@@ -0,0 +1,44 @@
+package rearth.oracle.search;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Candidate stage of a retrieval cascade: the keyword index picks the chunks sharing words with the query, and only
+ * those are scored against the query embedding by {@link OffHeapEmbeddingStore}, instead of every chunk vector.
+ * If the keyword index finds too few candidates, e.g. because the query only uses words the pages don't, the caller
+ * falls back to scoring everything.
+ *
+ * @param maxCandidates chunks picked by the keyword index, 0 disables the cascade
+ * @param minCandidates fewer candidates than this fall back to the full scan
+ * @param minChunks     stores with fewer chunks are always scanned fully, scoring them is cheap anyway
+ */
+public record TwoStageRetrieval(int maxCandidates, int minCandidates, int minChunks) {
+
+    /**
+     * @return whether a store with this many chunks should be searched through the cascade
+     */
+    public boolean appliesTo(int chunkCount) {
+        return maxCandidates > 0 && chunkCount >= minChunks;
+    }
+
+    /**
+     * @param accepted documents that may be candidates, e.g. the facet filter of the query
+     * @param idOf     store id of a document, or null if it is not embedded yet
+     * @return the store ids of the candidates, or null if there are too few of them
+     */
+    @Nullable
+    public <T> Set<String> candidates(LexicalIndex<T> index, String query, Predicate<T> accepted, Function<T, String> idOf) {
+        var candidates = new LinkedHashSet<String>();
+        for (var hit : index.search(query, maxCandidates, accepted)) {
+            var id = idOf.apply(hit.payload());
+            if (id != null) candidates.add(id);
+        }
+        return candidates.size() < Math.max(1, minCandidates) ? null : candidates;
+    }
+
+}
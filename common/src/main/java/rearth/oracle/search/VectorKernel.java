@@ -0,0 +1,57 @@
+package rearth.oracle.search;
+
+import rearth.oracle.Oracle;
+
+/**
+ * Dot product kernels used for scoring stored vectors. The SIMD implementation uses the incubating
+ * vector API, which is only available when the game is started with {@code --add-modules jdk.incubator.vector};
+ * otherwise the plain scalar loops are used.
+ */
+public interface VectorKernel {
+
+    float dot(float[] a, float[] b);
+
+    /**
+     * Dot product of a float query with an int8 row. The result still has to be multiplied by the row scale.
+     */
+    float dotInt8(float[] query, byte[] row);
+
+    static VectorKernel get() {
+        return Holder.INSTANCE;
+    }
+
+    final class Holder {
+        private static final VectorKernel INSTANCE = create();
+
+        private static VectorKernel create() {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                try {
+                    var kernel = (VectorKernel) Class.forName("rearth.oracle.search.SimdVectorKernel").getDeclaredConstructor().newInstance();
+                    Oracle.LOGGER.info("Using SIMD vector kernel for search scoring");
+                    return kernel;
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    Oracle.LOGGER.warn("Unable to load SIMD vector kernel, falling back to scalar scoring: {}", e.getMessage());
+                }
+            }
+            return new ScalarVectorKernel();
+        }
+    }
+
+    final class ScalarVectorKernel implements VectorKernel {
+
+        @Override
+        public float dot(float[] a, float[] b) {
+            var sum = 0f;
+            for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+            return sum;
+        }
+
+        @Override
+        public float dotInt8(float[] query, byte[] row) {
+            var sum = 0f;
+            for (int i = 0; i < query.length; i++) sum += query[i] * row[i];
+            return sum;
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package rearth.oracle.search;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * BERT style WordPiece tokenizer in plain Java, reading the vocabulary of a HuggingFace {@code tokenizer.json}.
+ * Text is cleaned, lower cased and stripped of accents (for uncased vocabularies), split at whitespace and
+ * punctuation, and each word is then split greedily into the longest known pieces.
+ *
+ * <p>Only covers what static embedding models need: token ids, without special tokens or attention masks.</p>
+ */
+public class WordPieceTokenizer {
+
+    private static final int MAX_WORD_LENGTH = 100;
+
+    private final Map<String, Integer> vocabulary;
+    private final int unknownId;
+    private final String continuationPrefix;
+    private final boolean lowerCase;
+
+    public WordPieceTokenizer(Map<String, Integer> vocabulary, String unknownToken, String continuationPrefix, boolean lowerCase) {
+        this.vocabulary = Map.copyOf(vocabulary);
+        this.unknownId = vocabulary.getOrDefault(unknownToken, -1);
+        this.continuationPrefix = continuationPrefix;
+        this.lowerCase = lowerCase;
+    }
+
+    /**
+     * @throws IOException if the file can't be read, or isn't a WordPiece tokenizer
+     */
+    public static WordPieceTokenizer load(Path tokenizerJson) throws IOException {
+        JsonObject root;
+        try {
+            root = JsonParser.parseString(Files.readString(tokenizerJson, StandardCharsets.UTF_8)).getAsJsonObject();
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid tokenizer file " + tokenizerJson, e);
+        }
+
+        var model = root.getAsJsonObject("model");
+        if (model == null || !model.has("type") || !"WordPiece".equals(model.get("type").getAsString()))
+            throw new IOException("Only WordPiece tokenizers are supported: " + tokenizerJson);
+
+        var vocabulary = new HashMap<String, Integer>();
+        for (var entry : model.getAsJsonObject("vocab").entrySet()) vocabulary.put(entry.getKey(), entry.getValue().getAsInt());
+        var unknownToken = model.has("unk_token") ? model.get("unk_token").getAsString() : "[UNK]";
+        var prefix = model.has("continuing_subword_prefix") ? model.get("continuing_subword_prefix").getAsString() : "##";
+
+        var lowerCase = true;
+        var normalizer = root.get("normalizer");
+        if (normalizer != null && normalizer.isJsonObject() && normalizer.getAsJsonObject().has("lowercase"))
+            lowerCase = normalizer.getAsJsonObject().get("lowercase").getAsBoolean();
+
+        return new WordPieceTokenizer(vocabulary, unknownToken, prefix, lowerCase);
+    }
+
+    public int vocabularySize() {
+        return vocabulary.size();
+    }
+
+    /**
+     * Passes the id of every token of the text to {@code consumer}, up to {@code maxTokens}. Unknown words are skipped.
+     *
+     * @return the number of tokens passed on
+     */
+    public int tokenize(String text, int maxTokens, IntConsumer consumer) {
+        var normalized = normalize(text);
+        var count = 0;
+        var wordStart = -1;
+        for (int i = 0; i <= normalized.length() && count < maxTokens; i++) {
+            var c = i < normalized.length() ? normalized.charAt(i) : ' ';
+            var whitespace = Character.isWhitespace(c);
+            var punctuation = !whitespace && isPunctuation(c);
+            if (!whitespace && !punctuation) {
+                if (wordStart < 0) wordStart = i;
+                continue;
+            }
+
+            if (wordStart >= 0) {
+                count += splitWord(normalized, wordStart, i, maxTokens - count, consumer);
+                wordStart = -1;
+            }
+            if (punctuation && count < maxTokens) count += splitWord(normalized, i, i + 1, maxTokens - count, consumer);
+        }
+        return count;
+    }
+
+    /**
+     * Greedy longest-match-first split of one word. A word with an unknown part is skipped as a whole, like BERT does.
+     */
+    private int splitWord(String text, int start, int end, int maxTokens, IntConsumer consumer) {
+        if (end - start > MAX_WORD_LENGTH) return 0;
+
+        var ids = new int[end - start];
+        var count = 0;
+        var position = start;
+        while (position < end) {
+            Integer id = null;
+            var pieceEnd = end;
+            for (; pieceEnd > position; pieceEnd--) {
+                var piece = text.substring(position, pieceEnd);
+                id = vocabulary.get(position == start ? piece : continuationPrefix + piece);
+                if (id != null) break;
+            }
+            if (id == null || id == unknownId) return 0;
+            ids[count++] = id;
+            position = pieceEnd;
+        }
+
+        count = Math.min(count, maxTokens);
+        for (int i = 0; i < count; i++) consumer.accept(ids[i]);
+        return count;
+    }
+
+    private String normalize(String text) {
+        var builder = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            var c = text.charAt(i);
+            if (c == 0 || c == 0xFFFD || (Character.isISOControl(c) && !Character.isWhitespace(c))) continue;
+            // CJK characters are words of their own
+            if (isCjk(c)) builder.append(' ').append(c).append(' ');
+            else builder.append(c);
+        }
+
+        var cleaned = builder.toString();
+        if (!lowerCase) return cleaned;
+        var decomposed = Normalizer.normalize(cleaned.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        builder.setLength(0);
+        for (int i = 0; i < decomposed.length(); i++) {
+            var c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isPunctuation(char c) {
+        if ((c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126)) return true;
+        return switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                   Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                   Character.OTHER_PUNCTUATION -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isCjk(char c) {
+        return (c >= 0x4E00 && c <= 0x9FFF) || (c >= 0x3400 && c <= 0x4DBF) || (c >= 0xF900 && c <= 0xFAFF);
+    }
+
+}
@@ -13,14 +13,17 @@ import net.objecthunter.exp4j.ExpressionBuilder;
 import rearth.oracle.Oracle;
 import rearth.oracle.OracleClient;
 import rearth.oracle.SemanticSearch;
-import rearth.oracle.progress.OracleProgressAPI;
+import rearth.oracle.search.IndexingJob;
+import rearth.oracle.search.QueryExecutor;
+import rearth.oracle.search.SearchPreview;
 import rearth.oracle.ui.widgets.*;
-import rearth.oracle.util.MarkdownParser;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static rearth.oracle.OracleClient.ROOT_DIR;
 
@@ -34,12 +37,17 @@ public class SearchScreen extends WikiBaseScreen {
     private static final int RESULT_PANEL_PADDING = 6;
     private static final int RESULT_TITLE_OVERLAP = 7;
     private static final int RESULT_BODY_INSET = 4;
+    // title chip plus a few preview lines, only used until the first rows are measured
+    private static final int ESTIMATED_RESULT_HEIGHT = 60;
     private static final int SEARCH_BAR_OVERLAP = 16;
     private static final int SEARCH_PANEL_PAD = 5;
+    private static final long QUERY_DEBOUNCE_MS = 150;
     
     private final Screen parent;
     private FlowWidget mainContainer;
-    private FlowWidget resultsPanel;
+    private VirtualListWidget<SemanticSearch.SearchResult, SearchResultRow> resultsList;
+    private LabelWidget partialNotice;
+    private LabelWidget modelNotice;
     private ScrollWidget resultsScroll;
     private TextureWidget oracleIcon;
     private TextFieldWidget searchField;
@@ -47,12 +55,31 @@ public class SearchScreen extends WikiBaseScreen {
     private int searchBarY;
     private int searchBarW;
     private int searchBarH;
-    private int waitFrames = 0;
+    // set by the search once it can answer queries, instead of asking it every frame
+    private volatile boolean searchReady = false;
+    private volatile Throwable searchError = null;
+    // results were shown while the index was still being built, the query runs again once indexing finished
+    private boolean refreshScheduled = false;
+    // embedding the query takes a model inference, so it never runs on the render thread
+    private final QueryExecutor<List<SemanticSearch.SearchResult>> queryExecutor = new QueryExecutor<>(QUERY_DEBOUNCE_MS,
+      query -> OracleClient.getOrCreateSearch().search(query), MinecraftClient.getInstance());
     
     public SearchScreen(Screen parent) {
         super(Text.translatable("oracle_index.title.search"));
         this.parent = parent;
         backgroundFillColor = 0x99191923;
+        
+        try {
+            OracleClient.getOrCreateSearch().whenReady().whenComplete((ignored, error) -> {
+                if (error != null) {
+                    searchError = error;
+                } else {
+                    searchReady = true;
+                }
+            });
+        } catch (Throwable error) {
+            searchError = error;
+        }
     }
     
     @Override
@@ -63,10 +90,15 @@ public class SearchScreen extends WikiBaseScreen {
         oracleIcon = new TextureWidget(Identifier.of(Oracle.MOD_ID, "textures/oracle-index-icon.png"), 256, 256);
         oracleIcon.size(ORACLE_ICON_SIZE, ORACLE_ICON_SIZE);
         
-        // results
-        resultsPanel = FlowWidget.vertical().gap(6);
-        resultsPanel.setPadding(Insets.of(RESULT_PANEL_PADDING, RESULT_PANEL_PADDING, RESULT_PANEL_PADDING, RESULT_PANEL_PADDING));
-        resultsScroll = new ScrollWidget(resultsPanel);
+        // results, rows are only built for the results scrolled into view
+        resultsList = new VirtualListWidget<>(SearchResultRow::new, SearchResultRow::bind, ESTIMATED_RESULT_HEIGHT);
+        resultsList.gap(6);
+        resultsList.setPadding(Insets.of(RESULT_PANEL_PADDING, RESULT_PANEL_PADDING, RESULT_PANEL_PADDING, RESULT_PANEL_PADDING));
+        partialNotice = new LabelWidget(Text.translatable("oracle_index.search.partial").formatted(Formatting.ITALIC));
+        partialNotice.color(0xFFAAAAAA);
+        modelNotice = new LabelWidget(Text.translatable("oracle_index.search.no_model").formatted(Formatting.ITALIC));
+        modelNotice.color(0xFFAAAAAA);
+        resultsScroll = new ScrollWidget(resultsList);
         mainContainer.child(resultsScroll);
         
         addRoot(mainContainer);
@@ -114,11 +146,8 @@ public class SearchScreen extends WikiBaseScreen {
     
     @Override
     public void render(DrawContext context, int mouseX, int mouseY, float delta) {
-        boolean searchReady;
-        try {
-            searchReady = OracleClient.getOrCreateSearch().isReady();
-        } catch (Throwable error) {
-            error.printStackTrace();
+        if (searchError != null) {
+            searchError.printStackTrace();
             var p = MinecraftClient.getInstance().player;
             if (p != null) {
                 p.sendMessage(Text.literal("Sorry, Oracle Index Search is not available on your platform."));
@@ -134,10 +163,9 @@ public class SearchScreen extends WikiBaseScreen {
             if (!searchField.isActive()) searchField.setEditable(true);
             if (searchField.getText().startsWith("Indexing")) searchField.setText("");
         } else {
-            waitFrames++;
-            int dots = (waitFrames / 2) % 3 + 1;
+            var status = progressText(OracleClient.getOrCreateSearch().getProgress());
             searchField.setEditable(false);
-            searchField.setText("Indexing" + ".".repeat(dots));
+            if (!searchField.getText().equals(status)) searchField.setText(status);
             searchField.setSuggestion("");
         }
         
@@ -145,6 +173,14 @@ public class SearchScreen extends WikiBaseScreen {
         renderSearchHeader(context, mouseX, mouseY, delta);
     }
     
+    private static String progressText(IndexingJob.Progress progress) {
+        if (progress.state() == IndexingJob.State.EMBEDDING)
+            return "Indexing... " + progress.chunksDone() + "/" + progress.chunksTotal() + " chunks";
+        if (progress.pagesTotal() > 0)
+            return "Indexing... " + progress.pagesDone() + "/" + progress.pagesTotal() + " pages";
+        return "Indexing...";
+    }
+    
     private void renderSearchHeader(DrawContext context, int mouseX, int mouseY, float delta) {
         WikiSurface.BEDROCK_PANEL.render(context,
           searchBarX - SEARCH_PANEL_PAD,
@@ -161,32 +197,96 @@ public class SearchScreen extends WikiBaseScreen {
         if (query.startsWith("Indexing")) return;
         var placeholder = Text.translatable("oracle_index.searchbar.placeholder").getString();
         searchField.setSuggestion(query.isEmpty() ? placeholder : "");
-        if (query.length() <= 2) return;
+        if (query.isBlank()) {
+            queryExecutor.cancel();
+            return;
+        }
         
-        List<SemanticSearch.SearchResult> results;
         var expr = tryProcessExpression(query);
         if (expr.isEmpty() && query.matches(MATH_EXPR_REGEX)) return;
         
-        resultsPanel.clearChildren();
-        results = expr.map(List::of)
-                    .orElseGet(() -> OracleClient.getOrCreateSearch().search(query));
+        if (expr.isPresent()) {
+            queryExecutor.cancel();
+            showResults(List.of(expr.get()));
+            return;
+        }
+        
+        // title and item name matches show up instantly, full results are merged in once they arrive
+        var suggestions = OracleClient.getOrCreateSearch().suggest(query);
+        showResults(suggestions);
         
-        for (var result : results) {
-            int rowWidth = resultsContentWidth();
-            var contentId = Identifier.of(Oracle.MOD_ID, String.format("%s/%s/%s",
+        if (query.length() <= 2) {
+            queryExecutor.cancel();
+            return;
+        }
+        queryExecutor.submit(query, results -> showResults(mergeResults(suggestions, results)));
+    }
+    
+    /**
+     * Suggestions stay on top. If a page is also a full result, its entry with preview text replaces the suggestion.
+     */
+    private static List<SemanticSearch.SearchResult> mergeResults(List<SemanticSearch.SearchResult> suggestions, List<SemanticSearch.SearchResult> results) {
+        var merged = new ArrayList<SemanticSearch.SearchResult>();
+        var remaining = new ArrayList<>(results);
+        for (var suggestion : suggestions) {
+            var full = remaining.stream().filter(result -> result.id().equals(suggestion.id())).findFirst();
+            full.ifPresent(remaining::remove);
+            merged.add(full.orElse(suggestion));
+        }
+        merged.addAll(remaining);
+        return merged;
+    }
+    
+    private void showResults(List<SemanticSearch.SearchResult> results) {
+        // locked pages are already filtered out by the search
+        var search = OracleClient.getOrCreateSearch();
+        var indexed = search.whenIndexed();
+        // a job that ended meanwhile won't improve the results anymore
+        var partial = !indexed.isDone() && results.stream().anyMatch(SemanticSearch.SearchResult::partial);
+        resultsList.header(partial ? partialNotice : search.isModelMissing() ? modelNotice : null);
+        resultsList.items(results);
+        if (partial) refreshWhenIndexed(indexed);
+    }
+    
+    private void refreshWhenIndexed(CompletableFuture<IndexingJob> indexed) {
+        if (refreshScheduled) return;
+        refreshScheduled = true;
+        // a cancelled job completes too, its successor is then awaited by the next partial results
+        indexed.whenCompleteAsync((job, error) -> {
+            refreshScheduled = false;
+            if (MinecraftClient.getInstance().currentScreen == this && !searchField.getText().isBlank())
+                onSearchTyped(searchField.getText());
+        }, MinecraftClient.getInstance());
+    }
+    
+    /**
+     * Result preview with a title chip overlapping the body preview panel. Rows are recycled by the results list,
+     * {@link #bind(SemanticSearch.SearchResult)} moves a row to another result.
+     */
+    private class SearchResultRow extends UIComponent {
+        private final FlowWidget titleRow = FlowWidget.horizontal().gap(4);
+        private final LabelWidget titleLabel = new LabelWidget(Text.empty());
+        private final FlowWidget body = FlowWidget.vertical().gap(1);
+        private final PreviewWidget preview = new PreviewWidget(SearchPreview.empty()).color(0xFF555555);
+        private String wikiId;
+        private Identifier target;
+        private boolean pressed;
+        
+        SearchResultRow() {
+            titleRow.setSurface(WikiSurface.BEDROCK_PANEL_DARK);
+            titleRow.setPadding(Insets.of(6, 7, 4, 8));
+            body.setSurface(WikiSurface.BEDROCK_PANEL);
+            body.setPadding(Insets.of(14, 8, 4, 4));
+        }
+        
+        void bind(SemanticSearch.SearchResult result) {
+            wikiId = result.id().getNamespace();
+            target = Identifier.of(Oracle.MOD_ID, String.format("%s/%s/%s",
               ROOT_DIR, result.id().getNamespace(), result.id().getPath()));
-            
-            // gate by unlocks
-            if (OracleClient.UNLOCK_CRITERIONS.containsKey(contentId.getPath())) {
-                var unlock = OracleClient.UNLOCK_CRITERIONS.get(contentId.getPath());
-                if (!OracleProgressAPI.IsUnlocked(result.id().getNamespace(), result.id().getPath(), unlock.getLeft(), unlock.getRight()))
-                    continue;
-            }
+            pressed = false;
             
             // title bar
-            var titleRow = FlowWidget.horizontal().gap(4);
-            titleRow.setSurface(WikiSurface.BEDROCK_PANEL_DARK);
-            titleRow.setPadding(Insets.of(6, 7, 4, 8));
+            titleRow.clearChildren();
             if (result.iconName() != null && Registries.ITEM.containsId(Identifier.of(result.iconName()))) {
                 var iconStack = new ItemStack(Registries.ITEM.get(Identifier.of(result.iconName())));
                 var icon = new ItemWidget(iconStack);
@@ -195,56 +295,14 @@ public class SearchScreen extends WikiBaseScreen {
                 icon.setHideItemDecorations(true);
                 titleRow.child(icon);
             }
-            titleRow.child(new LabelWidget(Text.literal(result.title()).formatted(Formatting.BOLD)));
-            
-            // body preview
-            var body = FlowWidget.vertical().gap(1);
-            body.setSurface(WikiSurface.BEDROCK_PANEL);
-            body.setPadding(Insets.of(14, 8, 4, 4));
-            
-            for (var text : result.texts()) {
-                var widgets = MarkdownParser.parseMarkdownToWidgets(text, result.id().getNamespace(),
-                  result.id(), s -> false, rowWidth - 16);
-                boolean hadContent = false;
-                for (var w : widgets) {
-                    if (w instanceof LabelWidget label && label.scale() == 1f) {
-                        label.lineSpacing(0);
-                        label.color(0xFF555555);
-                        body.child(label);
-                        hadContent = true;
-                    }
-                }
-                if (hadContent) break;
-            }
+            titleRow.child(titleLabel.text(Text.literal(result.title()).formatted(Formatting.BOLD)));
             
-            var openTarget = contentId;
-            var openWiki = result.id().getNamespace();
-            var resultRow = new SearchResultRow(titleRow, body, openWiki, openTarget);
-            resultsPanel.child(resultRow);
-        }
-        requestLayout();
-    }
-    
-    private int resultsContentWidth() {
-        int scrollWidth = resultsScroll != null && resultsScroll.getWidth() > 0 ? resultsScroll.getWidth() : PANEL_WIDTH;
-        return Math.max(80, scrollWidth - RESULT_PANEL_PADDING * 2 - 8);
-    }
-    
-    /**
-     * Result preview with a title chip overlapping the body preview panel.
-     */
-    private class SearchResultRow extends UIComponent {
-        private final FlowWidget titleRow;
-        private final FlowWidget body;
-        private final String wikiId;
-        private final Identifier target;
-        private boolean pressed;
-        
-        SearchResultRow(FlowWidget titleRow, FlowWidget body, String wikiId, Identifier target) {
-            this.titleRow = titleRow;
-            this.body = body;
-            this.wikiId = wikiId;
-            this.target = target;
+            // body preview, rendered at indexing time, so binding a row never parses markdown
+            body.clearChildren();
+            result.previews().stream()
+              .filter(text -> !text.isEmpty())
+              .findFirst()
+              .ifPresent(text -> body.child(preview.preview(text)));
         }
         
         @Override
@@ -315,16 +373,23 @@ public class SearchScreen extends WikiBaseScreen {
             var valid = expression.validate();
             if (valid.isValid()) {
                 var n = expression.evaluate();
-                var calc = String.format("%s = **%s**", input.replace("*", "x"),
-                  new DecimalFormat("#.####").format(n));
-                return Optional.of(new SemanticSearch.SearchResult(List.of(calc), 1, "Calculation: ",
-                  Identifier.of(Oracle.MOD_ID, "expression"), "minecraft:comparator"));
+                var formula = input.replace("*", "x") + " = ";
+                var value = new DecimalFormat("#.####").format(n);
+                var preview = new SearchPreview.Builder().append(formula, 0).append(value, SearchPreview.BOLD).build();
+                return Optional.of(new SemanticSearch.SearchResult(List.of(formula + value), List.of(preview), 1, "Calculation: ",
+                  Identifier.of(Oracle.MOD_ID, "expression"), "minecraft:comparator", false));
             }
         } catch (RuntimeException ignored) {
         }
         return Optional.empty();
     }
     
+    @Override
+    public void removed() {
+        queryExecutor.cancel();
+        super.removed();
+    }
+    
     @Override
     public void close() {
         Objects.requireNonNull(client).setScreen(parent);
@@ -0,0 +1,109 @@
+package rearth.oracle.ui.widgets;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.text.OrderedText;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import rearth.oracle.search.SearchPreview;
+
+import java.util.List;
+
+/**
+ * Search result preview. Draws the styled runs of a {@link SearchPreview} directly, without going through the
+ * markdown parser, and cuts it off after {@link #maxLines} lines. The text is only wrapped again when the width or
+ * the preview changes.
+ */
+public class PreviewWidget extends UIComponent {
+    
+    private Text text;
+    private int color = 0xFFFFFFFF;
+    private int maxLines = 4;
+    
+    // Cached wrap result
+    private List<OrderedText> wrappedLines = List.of();
+    private int lastWrapWidth = -1;
+    
+    public PreviewWidget(SearchPreview preview) {
+        this.text = toText(preview);
+    }
+    
+    public PreviewWidget preview(SearchPreview preview) {
+        this.text = toText(preview);
+        lastWrapWidth = -1;
+        return this;
+    }
+    
+    public PreviewWidget color(int argb) {
+        this.color = argb;
+        return this;
+    }
+    
+    public PreviewWidget maxLines(int maxLines) {
+        this.maxLines = maxLines;
+        lastWrapWidth = -1;
+        return this;
+    }
+    
+    private static Text toText(SearchPreview preview) {
+        var text = Text.empty();
+        for (int run = 0; run < preview.runCount(); run++) {
+            text.append(Text.literal(preview.runText(run)).setStyle(styleOf(preview.runStyle(run))));
+        }
+        return text;
+    }
+    
+    // same styles as the page renderer, see MarkdownParser
+    private static Style styleOf(int runStyle) {
+        var style = Style.EMPTY;
+        if ((runStyle & SearchPreview.CODE) != 0) return style.withColor(Formatting.DARK_AQUA);
+        if ((runStyle & SearchPreview.BOLD) != 0) style = style.withBold(true);
+        if ((runStyle & SearchPreview.ITALIC) != 0) style = style.withItalic(true);
+        if ((runStyle & SearchPreview.LINK) != 0) style = style.withColor(Formatting.BLUE).withUnderline(true);
+        return style;
+    }
+    
+    private TextRenderer textRenderer() {
+        return MinecraftClient.getInstance().textRenderer;
+    }
+    
+    private List<OrderedText> wrap(int widthHint) {
+        int wrapPx = widthHint > 0 ? widthHint : Integer.MAX_VALUE / 2;
+        if (wrapPx == lastWrapWidth) return wrappedLines;
+        lastWrapWidth = wrapPx;
+        var lines = textRenderer().wrapLines(text, wrapPx);
+        wrappedLines = lines.size() > maxLines ? List.copyOf(lines.subList(0, maxLines)) : lines;
+        return wrappedLines;
+    }
+    
+    @Override
+    public int getPreferredWidth(int widthHint) {
+        if (preferredWidth > 0) return preferredWidth;
+        int max = 0;
+        for (var line : wrap(widthHint)) max = Math.max(max, textRenderer().getWidth(line));
+        return max;
+    }
+    
+    @Override
+    public int getPreferredHeight(int widthHint) {
+        if (preferredHeight > 0) return preferredHeight;
+        return wrap(widthHint).size() * textRenderer().fontHeight;
+    }
+    
+    @Override
+    public void layout(int parentWidthHint, int parentHeightHint) {
+        wrap(parentWidthHint);
+    }
+    
+    @Override
+    protected void renderContent(DrawContext context, int mouseX, int mouseY, float delta) {
+        var lines = wrap(width > 0 ? width : Integer.MAX_VALUE / 2);
+        var tr = textRenderer();
+        for (int i = 0; i < lines.size(); i++) {
+            context.drawText(tr, lines.get(i), x, y + i * tr.fontHeight, color, false);
+        }
+    }
+
+}
@@ -14,6 +14,9 @@ import java.util.List;
  * a sharp viewport, then a soft 6-px fade gradient at the top/bottom edge
  * indicates more content is available.</p>
  *
+ * <p>A {@link VirtualListWidget} child is told the visible range before every
+ * frame, so it only builds the rows that are actually shown.</p>
+ *
  * <p>The scroll bar appears only while hovered or while a scroll is in
  * progress, then fades out after {@link #SCROLL_BAR_VISIBLE_TICKS}.</p>
  */
@@ -119,6 +122,12 @@ public class ScrollWidget extends UIComponent {
         updateScrollOffset();
         int visibleOffset = visibleOffset();
         
+        // virtual lists only build what is visible, which can change their measured height
+        if (child instanceof VirtualListWidget<?, ?> list) {
+            list.setViewport(visibleOffset, height);
+            contentHeight = Math.max(height, list.contentHeight());
+        }
+        
         // Clip viewport, then translate to apply scroll offset
         context.enableScissor(x, y, x + width, y + height);
         context.getMatrices().push();
@@ -0,0 +1,333 @@
+package rearth.oracle.ui.widgets;
+
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Vertical list that only builds the rows currently in view. Meant as the child of a {@link ScrollWidget}, which
+ * reports the visible part through {@link #setViewport(int, int)} every frame.
+ *
+ * <p>Rows are created by a factory and bound to items by a binder. A row that scrolls out of view goes back to a pool
+ * and is bound to the next item that scrolls in, so the number of row widgets stays at what fits on screen. Rows that
+ * were never shown count with an estimated height, replaced by their measured height once they are first bound.</p>
+ *
+ * <p>An optional {@link #header(UIComponent)} is laid out above the rows like a normal child.</p>
+ *
+ * @param <T> item type
+ * @param <R> row widget type
+ */
+public class VirtualListWidget<T, R extends UIComponent> extends UIComponent {
+    
+    // rows bound above and below the viewport, so scrolling doesn't show unbound space for a frame
+    private static final int OVERSCAN = 48;
+    private static final int MAX_MEASURE_PASSES = 4;
+    
+    private final Supplier<R> rowFactory;
+    private final BiConsumer<R, T> binder;
+    private final int estimatedRowHeight;
+    private final Map<Integer, R> boundRows = new HashMap<>();
+    private final ArrayDeque<R> pool = new ArrayDeque<>();
+    
+    private List<T> items = List.of();
+    private int gap = 0;
+    private @Nullable UIComponent header;
+    private int headerHeight = 0;
+    private boolean headerDirty = false;
+    
+    // measured row heights, -1 for rows that were never bound at the current width
+    private int[] heights = new int[0];
+    // top of every row relative to the first row, one extra entry for the end of the list
+    private int[] offsets = new int[1];
+    private boolean offsetsDirty = false;
+    private int measuredWidth = -1;
+    private int viewportTop = 0;
+    private int viewportHeight = 0;
+    
+    /**
+     * @param estimatedRowHeight height of rows that were not measured yet, until some rows are
+     */
+    public VirtualListWidget(Supplier<R> rowFactory, BiConsumer<R, T> binder, int estimatedRowHeight) {
+        this.rowFactory = rowFactory;
+        this.binder = binder;
+        this.estimatedRowHeight = estimatedRowHeight;
+    }
+    
+    public VirtualListWidget<T, R> gap(int gap) {
+        this.gap = gap;
+        offsetsDirty = true;
+        return this;
+    }
+    
+    public VirtualListWidget<T, R> header(@Nullable UIComponent header) {
+        this.header = header;
+        headerDirty = true;
+        return this;
+    }
+    
+    /**
+     * Replaces all items. Bound rows go back to the pool, nothing is built until the next viewport update.
+     */
+    public VirtualListWidget<T, R> items(List<T> items) {
+        releaseAll();
+        this.items = List.copyOf(items);
+        heights = new int[items.size()];
+        Arrays.fill(heights, -1);
+        offsetsDirty = true;
+        return this;
+    }
+    
+    public List<T> items() {
+        return items;
+    }
+    
+    /**
+     * Number of rows currently built, never more than fit into the viewport plus overscan.
+     */
+    public int boundRowCount() {
+        return boundRows.size();
+    }
+    
+    /**
+     * Full height of the list, including rows that are only estimated.
+     */
+    public int contentHeight() {
+        updateOffsets();
+        int rows = items.isEmpty() ? 0 : offsets[items.size()] - gap;
+        int headerBlock = headerBlockHeight();
+        if (headerBlock > 0 && rows > 0) headerBlock += gap;
+        return padding.vertical() + headerBlock + rows;
+    }
+    
+    /**
+     * Sets the visible part of the list, relative to its top, and binds the rows inside it.
+     */
+    public void setViewport(int top, int height) {
+        viewportTop = top;
+        viewportHeight = height;
+        updateRows();
+    }
+    
+    private int innerWidth() {
+        return Math.max(1, width - padding.horizontal());
+    }
+    
+    private int headerBlockHeight() {
+        return header == null || !header.isVisible() ? 0 : headerHeight;
+    }
+    
+    private int rowsTop() {
+        int headerBlock = headerBlockHeight();
+        return padding.top() + (headerBlock > 0 ? headerBlock + gap : 0);
+    }
+    
+    private int rowHeight(int index, int estimate) {
+        return heights[index] >= 0 ? heights[index] : estimate;
+    }
+    
+    private void updateOffsets() {
+        if (!offsetsDirty && offsets.length == items.size() + 1) return;
+        
+        // unmeasured rows are assumed to be like the measured ones
+        long measuredSum = 0;
+        int measured = 0;
+        for (var height : heights) {
+            if (height < 0) continue;
+            measuredSum += height;
+            measured++;
+        }
+        int estimate = measured > 0 ? (int) (measuredSum / measured) : estimatedRowHeight;
+        
+        if (offsets.length != items.size() + 1) offsets = new int[items.size() + 1];
+        for (int i = 0; i < items.size(); i++) offsets[i + 1] = offsets[i] + rowHeight(i, estimate) + gap;
+        offsetsDirty = false;
+    }
+    
+    /**
+     * @return the row at the given offset relative to the first row, clamped to the existing rows
+     */
+    private int rowAt(int offset) {
+        int low = 0;
+        int high = items.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= offset) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+    
+    private void updateRows() {
+        if (width <= 0) return;
+        if (headerDirty) layoutHeader();
+        if (items.isEmpty()) return;
+        
+        boolean changed = false;
+        // measuring rows moves the ones below them, so the visible range is resolved again until it is stable
+        for (int pass = 0; pass < MAX_MEASURE_PASSES; pass++) {
+            updateOffsets();
+            int top = viewportTop - rowsTop();
+            int first = rowAt(top - OVERSCAN);
+            int last = rowAt(top + viewportHeight + OVERSCAN);
+            
+            var iterator = boundRows.entrySet().iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (entry.getKey() >= first && entry.getKey() <= last) continue;
+                pool.push(entry.getValue());
+                iterator.remove();
+            }
+            
+            boolean measuredNew = false;
+            for (int i = first; i <= last; i++) {
+                if (boundRows.containsKey(i)) continue;
+                var row = pool.isEmpty() ? rowFactory.get() : pool.pop();
+                binder.accept(row, items.get(i));
+                boundRows.put(i, row);
+                changed = true;
+                
+                int height = row.getPreferredHeight(innerWidth());
+                if (height != heights[i]) {
+                    heights[i] = height;
+                    offsetsDirty = true;
+                    measuredNew = true;
+                }
+            }
+            if (!measuredNew) break;
+        }
+        
+        if (changed) placeRows();
+    }
+    
+    private void placeRows() {
+        updateOffsets();
+        int rowX = x + padding.left();
+        int rowsY = y + rowsTop();
+        int rowWidth = innerWidth();
+        for (var entry : boundRows.entrySet()) {
+            var row = entry.getValue();
+            int index = entry.getKey();
+            row.setPosition(rowX, rowsY + offsets[index]);
+            row.setLayoutSize(rowWidth, heights[index]);
+            row.layout(rowWidth, heights[index]);
+        }
+    }
+    
+    private void layoutHeader() {
+        headerDirty = false;
+        headerHeight = 0;
+        if (header != null) {
+            int headerWidth = innerWidth();
+            headerHeight = header.getPreferredHeight(headerWidth);
+            header.setPosition(x + padding.left(), y + padding.top());
+            header.setLayoutSize(headerWidth, headerHeight);
+            header.layout(headerWidth, headerHeight);
+        }
+        // the rows moved along with the header
+        if (!boundRows.isEmpty()) placeRows();
+    }
+    
+    private void releaseAll() {
+        pool.addAll(boundRows.values());
+        boundRows.clear();
+    }
+    
+    // ---------------------------------------------------------------- layout
+    
+    @Override
+    public int getPreferredWidth(int widthHint) {
+        if (preferredWidth > 0) return preferredWidth;
+        return Math.max(0, widthHint);
+    }
+    
+    @Override
+    public int getPreferredHeight(int widthHint) {
+        if (preferredHeight > 0) return preferredHeight;
+        return contentHeight();
+    }
+    
+    @Override
+    public void layout(int parentWidthHint, int parentHeightHint) {
+        if (parentWidthHint > 0) width = parentWidthHint;
+        
+        // row heights depend on the width, everything is measured again
+        if (innerWidth() != measuredWidth) {
+            measuredWidth = innerWidth();
+            Arrays.fill(heights, -1);
+            offsetsDirty = true;
+            releaseAll();
+        }
+        
+        layoutHeader();
+        updateRows();
+        height = contentHeight();
+    }
+    
+    // ---------------------------------------------------------------- render
+    
+    @Override
+    protected void renderContent(DrawContext context, int mouseX, int mouseY, float delta) {
+        if (header != null && header.isVisible()) header.render(context, mouseX, mouseY, delta);
+        for (var row : boundRows.values()) row.render(context, mouseX, mouseY, delta);
+    }
+    
+    @Override
+    public void tick() {
+        if (header != null) header.tick();
+        for (var row : boundRows.values()) row.tick();
+    }
+    
+    // ---------------------------------------------------------------- mouse
+    
+    @Override
+    public boolean handleClick(double mouseX, double mouseY, int button) {
+        if (header != null && header.isVisible() && header.handleClick(mouseX, mouseY, button)) return true;
+        for (var row : boundRows.values()) {
+            if (row.handleClick(mouseX, mouseY, button)) return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public boolean handleDrag(double mouseX, double mouseY, double dx, double dy, int button) {
+        for (var row : boundRows.values()) {
+            if (row.handleDrag(mouseX, mouseY, dx, dy, button)) return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public boolean handleMouseRelease(double mouseX, double mouseY, int button) {
+        boolean any = false;
+        for (var row : boundRows.values()) {
+            if (row.handleMouseRelease(mouseX, mouseY, button)) any = true;
+        }
+        return any;
+    }
+    
+    @Override
+    public boolean handleMouseScroll(double mouseX, double mouseY, double scrollDelta) {
+        for (var row : boundRows.values()) {
+            if (row.handleMouseScroll(mouseX, mouseY, scrollDelta)) return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public List<Text> tooltip(int mouseX, int mouseY) {
+        for (var row : boundRows.values()) {
+            if (!row.isInBounds(mouseX, mouseY)) continue;
+            var t = row.tooltip(mouseX, mouseY);
+            if (t != null && !t.isEmpty()) return t;
+        }
+        return super.tooltip(mouseX, mouseY);
+    }
+}
@@ -0,0 +1,150 @@
+package rearth.oracle.test;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import rearth.oracle.search.EmbeddingModelManager;
+import rearth.oracle.search.EmbeddingProvider;
+import rearth.oracle.search.EmbeddingProviders;
+import rearth.oracle.search.IndexingScheduler;
+import rearth.oracle.search.StaticEmbeddingProvider;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingModelTests {
+
+    @Test
+    @DisplayName("Embedding providers: Selected by id, unknown or unavailable ones fall back to the default")
+    void testEmbeddingProviders() throws Exception {
+        var modelDir = Files.createTempDirectory("oracle-models");
+        EmbeddingProviders.registerDefaults(modelDir, modelDir.resolve("custom"));
+        EmbeddingProviders.register(new TestProvider("test-available", true));
+        EmbeddingProviders.register(new TestProvider("test-unavailable", false));
+
+        assertEquals("test-available", EmbeddingProviders.select("test-available").id());
+        assertEquals(EmbeddingProviders.DEFAULT_ID, EmbeddingProviders.select("test-unavailable").id());
+        assertEquals(EmbeddingProviders.DEFAULT_ID, EmbeddingProviders.select("missing").id());
+        assertTrue(EmbeddingProviders.get("test-available").isPresent());
+    }
+
+    @Test
+    @DisplayName("Static embeddings: WordPiece tokens, normalized mean of memory-mapped token vectors")
+    void testStaticEmbeddingModel() throws Exception {
+        var modelDir = Files.createTempDirectory("oracle-static").resolve("tiny-static");
+        Files.createDirectories(modelDir);
+        Files.writeString(modelDir.resolve(StaticEmbeddingProvider.TOKENIZER_FILE), """
+          {"normalizer": {"type": "BertNormalizer", "lowercase": true},
+           "model": {"type": "WordPiece", "unk_token": "[UNK]", "continuing_subword_prefix": "##",
+                     "vocab": {"[UNK]": 0, "pulver": 1, "##izer": 2, "ore": 3, ".": 4}}}""");
+
+        var vectors = new float[][]{{0, 0}, {1, 0}, {0, 1}, {1, 1}, {0, 0}};
+        var header = "{\"embeddings\":{\"dtype\":\"F32\",\"shape\":[5,2],\"data_offsets\":[0,40]}}".getBytes(StandardCharsets.UTF_8);
+        var file = ByteBuffer.allocate(8 + header.length + 40).order(ByteOrder.LITTLE_ENDIAN);
+        file.putLong(header.length).put(header);
+        for (var vector : vectors) for (var value : vector) file.putFloat(value);
+        Files.write(modelDir.resolve(StaticEmbeddingProvider.MODEL_FILE), file.array());
+
+        var provider = EmbeddingProviders.forTool(modelDir.toString());
+        assertInstanceOf(StaticEmbeddingProvider.class, provider);
+        assertTrue(provider.isAvailable());
+        var model = provider.create(Runnable::run, 0);
+        assertEquals(2, model.dimension());
+
+        // pulver + ##izer + ore, the unknown "!" is skipped
+        var embedding = model.embed("Pulverizer ore!").content().vector();
+        assertEquals(Math.sqrt(0.5), embedding[0], 1e-6);
+        assertEquals(Math.sqrt(0.5), embedding[1], 1e-6);
+
+        // accents are stripped for uncased vocabularies
+        var accented = model.embed("\u00d3re").content().vector();
+        assertEquals(Math.sqrt(0.5), accented[0], 1e-6);
+
+        var unknown = model.embed("crusher").content().vector();
+        assertEquals(0, unknown[0]);
+        assertEquals(0, unknown[1]);
+    }
+
+    @Test
+    @DisplayName("Embedding lanes: Own model per lane, ingest batches in slices that wait for running queries")
+    void testEmbeddingLanes() throws Exception {
+        var created = new ArrayList<EmbeddingModelManager.Lane>();
+        var ingestBatches = new ArrayList<Integer>();
+        var queryStarted = new CountDownLatch(1);
+        var releaseQuery = new CountDownLatch(1);
+        var ingestDuringQuery = new AtomicInteger();
+        var queryRunning = new AtomicInteger();
+
+        var models = new EmbeddingModelManager(lane -> {
+            synchronized (created) {
+                created.add(lane);
+            }
+            return batch -> {
+                if (lane == EmbeddingModelManager.Lane.QUERY) {
+                    queryRunning.incrementAndGet();
+                    queryStarted.countDown();
+                    try {
+                        releaseQuery.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    queryRunning.decrementAndGet();
+                } else {
+                    if (queryRunning.get() > 0) ingestDuringQuery.incrementAndGet();
+                    synchronized (ingestBatches) {
+                        ingestBatches.add(batch.size());
+                    }
+                }
+                return Response.from(batch.stream().map(segment -> Embedding.from(new float[]{1, 0})).toList());
+            };
+        }, 4, 0, IndexingScheduler.unthrottled());
+
+        var query = CompletableFuture.runAsync(() -> models.query().embed("reactor"));
+        assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+        var segments = IntStream.range(0, 10).mapToObj(i -> TextSegment.from("chunk " + i)).toList();
+        var ingest = CompletableFuture.supplyAsync(() -> models.ingest().embedAll(segments).content());
+
+        // the ingest lane holds back while the query runs
+        Thread.sleep(50);
+        assertTrue(ingestBatches.isEmpty());
+        releaseQuery.countDown();
+        query.get(5, TimeUnit.SECONDS);
+        assertEquals(10, ingest.get(5, TimeUnit.SECONDS).size());
+
+        assertEquals(0, ingestDuringQuery.get());
+        assertEquals(List.of(4, 4, 2), ingestBatches);
+        assertEquals(Set.of(EmbeddingModelManager.Lane.QUERY, EmbeddingModelManager.Lane.INGEST), Set.copyOf(created));
+        assertEquals(2, created.size());
+        models.unload();
+        assertFalse(models.isLoaded());
+    }
+
+    private record TestProvider(String id, boolean isAvailable) implements EmbeddingProvider {
+        @Override
+        public String description() {
+            return id;
+        }
+
+        @Override
+        public EmbeddingModel create(Executor workers, int intraOpThreads) {
+            return batch -> Response.from(batch.stream().map(segment -> Embedding.from(new float[]{1, 0})).toList());
+        }
+    }
+
+}
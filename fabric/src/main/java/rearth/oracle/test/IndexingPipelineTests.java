@@ -0,0 +1,250 @@
+package rearth.oracle.test;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import rearth.oracle.search.EmbeddingCache;
+import rearth.oracle.search.IndexingJob;
+import rearth.oracle.search.IndexingPipeline;
+import rearth.oracle.search.IndexingScheduler;
+import rearth.oracle.search.MarkdownChunker;
+import rearth.oracle.search.SearchPreview;
+import rearth.oracle.search.SearchReadiness;
+
+import java.io.InvalidObjectException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexingPipelineTests {
+
+    @Test
+    @DisplayName("Chunker: One plain text chunk per section")
+    void testMarkdownChunker() {
+        var page = """
+          ---
+          title: Pulverizer
+          id: oritech:pulverizer
+          ---
+          # Pulverizer
+          The pulverizer grinds **ores** into dust.
+
+          <ModAsset location="pulverizer" width={50} />
+
+          ## Crafting
+          <CraftingRecipe slots={['minecraft:iron_ingot', 'minecraft:flint']} result="oritech:pulverizer" />
+
+          ## Usage
+          - Needs energy
+          - Doubles ore output
+          """;
+
+        var chunks = MarkdownChunker.chunk(page);
+        assertEquals(3, chunks.size());
+        assertEquals("Pulverizer\nThe pulverizer grinds ores into dust.", chunks.get(0).text());
+        assertEquals("pulverizer", chunks.get(0).anchor());
+        assertEquals("Crafting\nCrafting recipe: pulverizer", chunks.get(1).text());
+        assertEquals("usage", chunks.get(2).anchor());
+        assertTrue(chunks.get(2).text().contains("- Needs energy\n- Doubles ore output"));
+        assertTrue(chunks.stream().noneMatch(chunk -> chunk.text().contains("title:") || chunk.text().contains("<")));
+    }
+
+    @Test
+    @DisplayName("Chunker: Styled previews without markdown")
+    void testSearchPreview() {
+        var chunks = MarkdownChunker.chunk("""
+          # Pulverizer
+          The pulverizer grinds **ores** into `dust`.
+          """);
+
+        var preview = chunks.getFirst().preview();
+        assertEquals(chunks.getFirst().text(), preview.text());
+        assertEquals(List.of("Pulverizer", "\nThe pulverizer grinds ", "ores", " into ", "dust", "."),
+          IntStream.range(0, preview.runCount()).mapToObj(preview::runText).toList());
+        assertEquals(SearchPreview.BOLD, preview.runStyle(0));
+        assertEquals(SearchPreview.BOLD, preview.runStyle(2));
+        assertEquals(SearchPreview.CODE, preview.runStyle(4));
+
+        var slice = preview.slice(11, 37);
+        assertEquals("The pulverizer grinds ores", slice.text());
+        assertEquals(SearchPreview.BOLD, slice.runStyle(slice.runCount() - 1));
+
+        var truncated = SearchPreview.plain("word ".repeat(100));
+        assertTrue(truncated.text().length() <= SearchPreview.MAX_LENGTH);
+        assertTrue(truncated.text().endsWith("word\u2026"));
+    }
+
+    @Test
+    @DisplayName("Indexing job: Cancellation stops between batches and keeps finished ones")
+    void testIndexingJobCancel() throws Exception {
+        var cacheFile = Files.createTempFile("oracle-cache", ".bin");
+        Files.delete(cacheFile);
+        var cache = EmbeddingCache.load(cacheFile, "test");
+        var job = new IndexingJob(1);
+        var executor = Executors.newSingleThreadExecutor();
+
+        try {
+            var pipeline = new IndexingPipeline(executor, cache, job);
+            var segments = IntStream.range(0, 100).mapToObj(i -> TextSegment.from("chunk " + i)).toList();
+            EmbeddingModel model = batch -> {
+                job.cancel();   // cancelled while the first batch is running
+                return Response.from(batch.stream().map(segment -> Embedding.from(new float[]{1, 0})).toList());
+            };
+
+            assertThrows(CancellationException.class, () -> pipeline.embed(() -> model, segments));
+            assertEquals(64, cache.size());
+            assertEquals(64, job.progress().chunksDone());
+            assertEquals(100, job.progress().chunksTotal());
+            assertEquals(IndexingJob.State.EMBEDDING, job.state());
+
+            job.markCancelled();
+            assertTrue(job.completion().isCancelled());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Embedding cache: Reloading one changed page keeps the cached vectors of the unchanged pages")
+    void testEmbeddingCacheRetention() throws Exception {
+        var cacheFile = Files.createTempFile("oracle-cache", ".bin");
+        Files.delete(cacheFile);
+        var executor = Executors.newSingleThreadExecutor();
+        EmbeddingModel model = batch -> Response.from(batch.stream().map(segment -> Embedding.from(new float[]{segment.text().length(), 1})).toList());
+        var pages = IntStream.range(0, 10).mapToObj(page -> IntStream.range(0, 5).mapToObj(i -> "page " + page + " chunk " + i).toList()).toList();
+
+        try {
+            // first launch embeds every page
+            var cache = EmbeddingCache.load(cacheFile, "test");
+            new IndexingPipeline(executor, cache).embed(() -> model, pages.stream().flatMap(List::stream).map(TextSegment::from).toList());
+            cache.saveAndPrune();
+            assertEquals(50, EmbeddingCache.load(cacheFile, "test").size());
+
+            // a reload only looks up the changed page, the others are marked as still indexed
+            cache = EmbeddingCache.load(cacheFile, "test");
+            new IndexingPipeline(executor, cache).embed(() -> model, List.of(TextSegment.from("page 0 changed chunk")));
+            pages.stream().skip(1).flatMap(List::stream).forEach(cache::markUsed);
+            cache.saveAndPrune();
+
+            var reloaded = EmbeddingCache.load(cacheFile, "test");
+            assertEquals(51, reloaded.size());
+            for (var page : pages.subList(1, pages.size())) {
+                for (var text : page) assertNotNull(reloaded.get(reloaded.key(text)));
+            }
+
+            // a cancelled job saves without pruning, even though it only touched a single chunk
+            cache = EmbeddingCache.load(cacheFile, "test");
+            new IndexingPipeline(executor, cache).embed(() -> model, List.of(TextSegment.from("page 1 changed chunk")));
+            cache.save();
+            assertEquals(52, EmbeddingCache.load(cacheFile, "test").size());
+
+            // only pages that are gone for good are dropped, once they are the majority
+            cache = EmbeddingCache.load(cacheFile, "test");
+            pages.getFirst().forEach(cache::markUsed);
+            cache.saveAndPrune();
+            assertEquals(5, EmbeddingCache.load(cacheFile, "test").size());
+        } finally {
+            executor.shutdown();
+            Files.deleteIfExists(cacheFile);
+        }
+    }
+
+    @Test
+    @DisplayName("Readiness: A failed job only lasts until the next one, a ready search stays ready")
+    void testSearchReadiness() throws Exception {
+        var readiness = new SearchReadiness();
+        readiness.jobStarted();
+        var firstWait = readiness.whenReady();
+        assertFalse(readiness.isReady());
+
+        readiness.markFailed("Embeddings failed to load");
+        assertThrows(InvalidObjectException.class, readiness::isReady);
+        assertTrue(firstWait.isCompletedExceptionally());
+
+        // the next reload succeeds
+        readiness.jobStarted();
+        assertFalse(readiness.isReady());
+        var secondWait = readiness.whenReady();
+        readiness.markReady();
+        assertTrue(readiness.isReady());
+        assertTrue(secondWait.isDone() && !secondWait.isCompletedExceptionally());
+
+        // later jobs neither reset nor fail a ready search
+        readiness.jobStarted();
+        readiness.markFailed("Embeddings failed to load");
+        assertTrue(readiness.isReady());
+    }
+
+    @Test
+    @DisplayName("Indexing scheduler: Backs off on slow frames, runs at full speed in menus and without frames")
+    void testIndexingScheduler() {
+        var ms = 1_000_000L;
+        var unthrottled = IndexingScheduler.unthrottled();
+        unthrottled.frameRendered(ms, false);
+        unthrottled.frameRendered(100 * ms, false);
+        assertEquals(0, unthrottled.beforeSlice(100 * ms));
+
+        var scheduler = new IndexingScheduler(true, 0.1, 0.2);
+        // nothing rendered, nothing to keep smooth
+        assertEquals(0, scheduler.beforeSlice(0));
+        scheduler.afterSlice(0);
+
+        // 10 ms frames without indexing are the baseline
+        var time = 0L;
+        for (int i = 0; i < 20; i++) scheduler.frameRendered(time += 10 * ms, false);
+        assertEquals(10, scheduler.stats().baselineFrameMillis(), 0.01);
+
+        // a 90 ms slice that made the frames three times slower
+        assertEquals(0, scheduler.beforeSlice(time));
+        for (int i = 0; i < 3; i++) scheduler.frameRendered(time += 30 * ms, false);
+        scheduler.afterSlice(time);
+        assertEquals(3, scheduler.stats().slowFrames());
+
+        // halved duty cycle: as long a pause as the slice took
+        assertEquals(90 * ms, scheduler.beforeSlice(time));
+        assertEquals(0.5, scheduler.dutyCycle(), 1e-9);
+        // frames during the pause don't count against the slice
+        for (int i = 0; i < 9; i++) scheduler.frameRendered(time += 10 * ms, false);
+        assertEquals(3, scheduler.stats().indexingFrames());
+
+        // repeated slow slices go down to the minimum duty cycle, but no lower
+        for (int round = 0; round < 6; round++) {
+            for (int i = 0; i < 3; i++) scheduler.frameRendered(time += 30 * ms, false);
+            scheduler.afterSlice(time);
+            scheduler.beforeSlice(time += 300 * ms);
+        }
+        assertEquals(0.1, scheduler.dutyCycle(), 1e-9);
+        assertTrue(scheduler.stats().backoffs() >= 4);
+
+        // a game that stopped rendering doesn't pause indexing
+        scheduler.afterSlice(time);
+        assertEquals(0, scheduler.beforeSlice(time += 2000 * ms));
+        scheduler.afterSlice(time);
+        // neither do menus and paused games
+        scheduler.frameRendered(time += 10 * ms, true);
+        scheduler.frameRendered(time += 10 * ms, true);
+        assertEquals(0, scheduler.beforeSlice(time));
+        scheduler.afterSlice(time);
+
+        // fast frames while indexing raise the duty cycle again
+        for (int round = 0; round < 60; round++) {
+            var pause = scheduler.beforeSlice(time);
+            for (var sliceStart = time + pause; time < sliceStart; ) scheduler.frameRendered(time += 10 * ms, false);
+            scheduler.frameRendered(time += 10 * ms, false);
+            scheduler.afterSlice(time);
+        }
+        assertEquals(1, scheduler.dutyCycle(), 1e-9);
+        assertEquals(0, scheduler.beforeSlice(time));
+
+        scheduler.resetStats();
+        assertEquals(0, scheduler.stats().slices());
+    }
+
+}
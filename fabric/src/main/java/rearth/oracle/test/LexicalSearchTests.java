@@ -0,0 +1,55 @@
+package rearth.oracle.test;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import rearth.oracle.search.LexicalIndex;
+import rearth.oracle.search.TitleTypeahead;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LexicalSearchTests {
+
+    @Test
+    @DisplayName("BM25: Keyword ranking")
+    void testLexicalRanking() {
+        var index = LexicalIndex.build(List.of(
+          new LexicalIndex.Document<>("The pulverizer grinds ores into dust.", "pulverizer"),
+          new LexicalIndex.Document<>("Fluid pipes move fluids between machines. Pipes can be dyed.", "pipes"),
+          new LexicalIndex.Document<>("Machines need energy. The pulverizer is one of the first machines.", "energy")));
+
+        var hits = index.search("Pulverizer", 10);
+        assertEquals(2, hits.size());
+        assertEquals("pulverizer", hits.getFirst().payload());
+        assertEquals(1, hits.getFirst().score(), 1e-6);
+
+        assertEquals("pipes", index.search("pipe", 10).getFirst().payload());
+        assertTrue(index.search("reactor", 10).isEmpty());
+        var titles = Set.of(LexicalIndex.nameKey("Pulverizer"), LexicalIndex.nameKey("Fluid Pipes"));
+        assertTrue(index.isKeywordQuery("pulverizer", titles));
+        assertTrue(index.isKeywordQuery("fluid pipe", titles));
+        assertFalse(index.isKeywordQuery("machines energy", titles));      // known words, but no title
+        assertFalse(index.isKeywordQuery("how do I get more power from my generators", titles));
+    }
+
+    @Test
+    @DisplayName("Typeahead: Prefix, word and fuzzy matches")
+    void testTypeahead() {
+        var typeahead = TitleTypeahead.build(List.of(
+          new TitleTypeahead.Entry<>("Pulverizer", "pulverizer"),
+          new TitleTypeahead.Entry<>("Enderic Laser", "laser"),
+          new TitleTypeahead.Entry<>("enderic_laser", "laser"),
+          new TitleTypeahead.Entry<>("Powered Furnace", "furnace"),
+          new TitleTypeahead.Entry<>("Pump", "pump")));
+
+        assertEquals(List.of("pump", "pulverizer", "furnace"), typeahead.suggest("p", 5));
+        assertEquals(List.of("pulverizer"), typeahead.suggest("pul", 5));
+        assertEquals(List.of("pulverizer"), typeahead.suggest("pulvr", 5));     // refined from the previous query
+        assertEquals(List.of("laser"), typeahead.suggest("las", 5));
+        assertEquals(List.of("furnace"), typeahead.suggest("furance", 5));
+        assertTrue(typeahead.suggest("xyz", 5).isEmpty());
+    }
+
+}
@@ -0,0 +1,70 @@
+package rearth.oracle.test;
+
+import net.minecraft.client.gui.DrawContext;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import rearth.oracle.search.PageAggregator;
+import rearth.oracle.ui.widgets.UIComponent;
+import rearth.oracle.ui.widgets.VirtualListWidget;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchResultsTests {
+
+    @Test
+    @DisplayName("Page aggregation: Pooled page scores and bounded top pages")
+    void testPageAggregator() {
+        var aggregator = new PageAggregator<String, String>(0.05);
+        aggregator.add("single", "a", 0.80);
+        aggregator.add("several", "b", 0.79);
+        aggregator.add("several", "c", 0.80);
+        aggregator.add("several", "d", 0.78);
+        for (int i = 0; i < 50; i++) aggregator.add("weak" + i, "w", 0.5);
+
+        var pages = aggregator.top(3);
+        assertEquals(3, pages.size());
+        assertEquals("several", pages.get(0).key());     // several good chunks beat one of the same score
+        assertEquals("single", pages.get(1).key());
+        assertEquals(List.of("c", "b", "d"), pages.get(0).chunks().stream().map(PageAggregator.ScoredChunk::chunk).toList());
+        assertEquals(0.80, pages.get(0).maxScore(), 1e-9);
+
+        var maxPooling = new PageAggregator<String, String>(0);
+        maxPooling.add("x", "a", 0.7);
+        maxPooling.add("x", "b", 0.7);
+        assertEquals(0.7, maxPooling.top(1).getFirst().score(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Results list: Only rows in view are built, and recycled while scrolling")
+    void testVirtualList() {
+        var created = new AtomicInteger();
+        var list = new VirtualListWidget<Integer, UIComponent>(() -> {
+            created.incrementAndGet();
+            return new UIComponent() {
+                @Override
+                protected void renderContent(DrawContext context, int mouseX, int mouseY, float delta) {
+                }
+            }.size(100, 20);
+        }, (row, item) -> {}, 50);
+        list.gap(5);
+        list.items(IntStream.range(0, 1000).boxed().toList());
+        assertEquals(1000 * 50 + 999 * 5, list.contentHeight());     // estimated until measured
+        list.layout(100, 0);
+
+        list.setViewport(0, 200);
+        assertTrue(list.boundRowCount() < 15, "built too many rows: " + list.boundRowCount());
+        assertEquals(1000 * 25 - 5, list.contentHeight());           // measured rows replace the estimate
+
+        for (int top = 0; top < 5000; top += 40) list.setViewport(top, 200);
+        assertTrue(created.get() < 20, "rows were not recycled: " + created.get());
+
+        list.items(List.of());
+        assertEquals(0, list.boundRowCount());
+        assertEquals(0, list.contentHeight());
+    }
+
+}
@@ -0,0 +1,191 @@
+package rearth.oracle.test;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import rearth.oracle.search.FacetFilter;
+import rearth.oracle.search.HnswIndex;
+import rearth.oracle.search.LexicalIndex;
+import rearth.oracle.search.OffHeapEmbeddingStore;
+import rearth.oracle.search.TwoStageRetrieval;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorStoreTests {
+
+    private static float[][] randomUnitVectors(int count, int dimension, long seed) {
+        var random = new Random(seed);
+        var vectors = new float[count][dimension];
+        for (var vector : vectors) {
+            double norm = 0;
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = (float) random.nextGaussian();
+                norm += vector[i] * vector[i];
+            }
+            for (int i = 0; i < dimension; i++) vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vectors;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+    @Test
+    @DisplayName("HNSW: Recall against exact search")
+    void testHnswRecall() {
+        var vectors = randomUnitVectors(3000, 32, 1);
+        var queries = randomUnitVectors(50, 32, 2);
+        var graph = new HnswIndex(new HnswIndex.Parameters(16, 100, 64), (a, b) -> dot(vectors[a], vectors[b]));
+        for (int i = 0; i < vectors.length; i++) graph.insert(i);
+
+        int found = 0;
+        for (var query : queries) {
+            var exact = IntStream.range(0, vectors.length).boxed()
+                          .sorted(Comparator.comparingDouble(row -> -dot(query, vectors[row])))
+                          .limit(10)
+                          .toList();
+            var approximate = new HashSet<Integer>();
+            graph.search(row -> dot(query, vectors[row]), 10, 64, row -> true).forEach(n -> approximate.add(n.node()));
+            found += (int) exact.stream().filter(approximate::contains).count();
+        }
+
+        assertTrue(found / (queries.length * 10.0) > 0.9, "recall too low: " + found);
+    }
+
+    @Test
+    @DisplayName("HNSW: Rejected rows are never returned")
+    void testHnswAccept() {
+        var vectors = randomUnitVectors(500, 16, 3);
+        var graph = new HnswIndex(new HnswIndex.Parameters(8, 50, 32), (a, b) -> dot(vectors[a], vectors[b]));
+        for (int i = 0; i < vectors.length; i++) graph.insert(i);
+
+        var results = graph.search(row -> dot(vectors[0], vectors[row]), 20, 32, row -> row % 2 == 1);
+        assertEquals(20, results.size());
+        assertTrue(results.stream().allMatch(n -> n.node() % 2 == 1));
+    }
+
+    @Test
+    @DisplayName("Store: Facet filters select rows before scoring")
+    void testFacetFilter() {
+        var settings = new OffHeapEmbeddingStore.Settings(new HnswIndex.Parameters(16, 100, 64), 200, false, 0);
+        var store = new OffHeapEmbeddingStore(null, settings, Set.of("wiki", "page"));
+        var vectors = randomUnitVectors(1000, 16, 5);
+        var embeddings = Arrays.stream(vectors).map(Embedding::from).toList();
+        var segments = IntStream.range(0, vectors.length)
+                         .mapToObj(i -> TextSegment.from("chunk " + i, Metadata.from(Map.of("wiki", i % 10 == 0 ? "small" : "large", "page", "page" + i % 50))))
+                         .toList();
+        store.addAll(embeddings, segments);
+        store.updateGraph();
+
+        var filter = FacetFilter.none().require("wiki", List.of("small")).exclude("page", List.of("page0"));
+        var request = EmbeddingSearchRequest.builder().queryEmbedding(Embedding.from(vectors[1])).maxResults(15).minScore(0.0).filter(filter).build();
+        var matches = store.search(request).matches();
+
+        // 100 rows in the small wiki, 20 of them on the excluded page: still a full result list
+        assertEquals(15, matches.size());
+        assertTrue(matches.stream().allMatch(match -> filter.test(match.embedded().metadata())));
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Store: Rows added since the last graph update are scored exactly until they are linked")
+    void testPendingGraphRows() {
+        var settings = new OffHeapEmbeddingStore.Settings(new HnswIndex.Parameters(16, 100, 64), 200, false, 0);
+        var store = new OffHeapEmbeddingStore(null, settings);
+        var vectors = randomUnitVectors(1200, 16, 8);
+        var embeddings = Arrays.stream(vectors).map(Embedding::from).toList();
+        store.addAll(embeddings.subList(0, 1000));
+        store.updateGraph();
+
+        // the query row itself is only added afterwards, it must still be the best match
+        var added = store.addAll(embeddings.subList(1000, 1200));
+        var request = EmbeddingSearchRequest.builder().queryEmbedding(embeddings.get(1100)).maxResults(10).minScore(0.0).build();
+        var matches = store.search(request).matches();
+        assertEquals(10, matches.size());
+        assertEquals(added.get(100), matches.getFirst().embeddingId());
+
+        store.updateGraph();
+        assertEquals(added.get(100), store.search(request).matches().getFirst().embeddingId());
+
+        // a cleared store drops its graph, new rows are scanned until the next update
+        store.removeAll();
+        store.addAll(embeddings.subList(0, 300));
+        assertEquals(10, store.search(request).matches().size());
+        store.updateGraph();
+        assertEquals(10, store.search(request).matches().size());
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Store: Quantized rows serve the graph and scans, float rows are only used for re-ranking")
+    void testQuantizedStore() {
+        var vectors = randomUnitVectors(1000, 32, 9);
+        var embeddings = Arrays.stream(vectors).map(Embedding::from).toList();
+        for (var rerankFactor : new int[]{0, 4}) {
+            for (var threshold : new int[]{200, Integer.MAX_VALUE}) {
+                var store = new OffHeapEmbeddingStore(null, new OffHeapEmbeddingStore.Settings(new HnswIndex.Parameters(16, 100, 64), threshold, true, rerankFactor));
+                var ids = store.addAll(embeddings);
+                store.updateGraph();
+
+                var hits = 0;
+                for (int query = 0; query < 50; query++) {
+                    var request = EmbeddingSearchRequest.builder().queryEmbedding(embeddings.get(query)).maxResults(5).minScore(0.0).build();
+                    var matches = store.search(request).matches();
+                    assertEquals(5, matches.size());
+                    if (matches.getFirst().embeddingId().equals(ids.get(query))) hits++;
+                }
+                assertTrue(hits >= 48, "rerank " + rerankFactor + ", threshold " + threshold + ": " + hits);
+                store.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Two-stage retrieval: Keyword candidates restrict vector scoring, too few fall back to a full scan")
+    void testTwoStageRetrieval() {
+        var settings = new OffHeapEmbeddingStore.Settings(new HnswIndex.Parameters(16, 100, 64), 200, false, 0);
+        var store = new OffHeapEmbeddingStore(null, settings, Set.of("wiki"));
+        var vectors = randomUnitVectors(1000, 16, 6);
+        var embeddings = Arrays.stream(vectors).map(Embedding::from).toList();
+        var segments = IntStream.range(0, vectors.length)
+                         .mapToObj(i -> TextSegment.from((i % 20 == 0 ? "reactor " : "pipe ") + i, Metadata.from(Map.of("wiki", i % 40 == 0 ? "small" : "large"))))
+                         .toList();
+        var ids = store.addAll(embeddings, segments);
+        var lexical = LexicalIndex.build(IntStream.range(0, segments.size()).mapToObj(i -> new LexicalIndex.Document<>(segments.get(i).text(), ids.get(i))).toList());
+
+        var retrieval = new TwoStageRetrieval(400, 40, 500);
+        assertTrue(retrieval.appliesTo(store.size()));
+        assertFalse(retrieval.appliesTo(499));
+
+        // 50 reactor chunks: enough candidates, only those are scored, facet filters still apply
+        var candidates = retrieval.candidates(lexical, "reactor", id -> true, id -> id);
+        assertNotNull(candidates);
+        assertEquals(50, candidates.size());
+        var filter = FacetFilter.none().require("wiki", List.of("small"));
+        var request = EmbeddingSearchRequest.builder().queryEmbedding(Embedding.from(vectors[3])).maxResults(15).minScore(0.0).filter(filter).build();
+        var matches = store.search(request, candidates).matches();
+        assertEquals(15, matches.size());
+        assertTrue(matches.stream().allMatch(match -> match.embedded().text().startsWith("reactor") && filter.test(match.embedded().metadata())));
+
+        // ids of chunks that aren't embedded don't count as candidates
+        assertNull(retrieval.candidates(lexical, "reactor", id -> true, id -> id.equals(ids.get(0)) ? id : null));
+        assertNull(retrieval.candidates(lexical, "turbine", id -> true, id -> id));
+        store.close();
+    }
+
+}